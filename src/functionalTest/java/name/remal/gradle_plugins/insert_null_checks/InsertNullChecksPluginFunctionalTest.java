@@ -0,0 +1,155 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.write;
+import static java.util.Collections.addAll;
+import static org.gradle.testkit.runner.TaskOutcome.FROM_CACHE;
+import static org.gradle.testkit.runner.TaskOutcome.SUCCESS;
+import static org.gradle.testkit.runner.TaskOutcome.UP_TO_DATE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipFile;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.BuildTask;
+import org.gradle.testkit.runner.GradleRunner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class InsertNullChecksPluginFunctionalTest {
+
+    private static final String NULL_CHECK_MESSAGE = "param must not be null";
+
+    @TempDir
+    Path projectDir;
+
+    @BeforeEach
+    void beforeEach() {
+        writeFile("settings.gradle", String.join("\n",
+            "rootProject.name = 'project'",
+            "buildCache { local { directory = file('build-cache') } }"
+        ));
+        writeFile("build.gradle", String.join("\n",
+            "plugins {",
+            "    id 'java'",
+            "    id 'name.remal.insert-null-checks'",
+            "}",
+            "insertNullChecks {",
+            "    useDedicatedTasks.set(",
+            "        providers.gradleProperty('useDedicatedTasks').map { it.toBoolean() }.orElse(false)",
+            "    )",
+            "}"
+        ));
+        writeFile("src/main/java/pkg/Logic.java", String.join("\n",
+            "package pkg;",
+            "public class Logic {",
+            "    public static void method(String param) {",
+            "    }",
+            "}"
+        ));
+    }
+
+    @Test
+    void compileTaskIsNotUpToDateIfDedicatedTasksAreDisabled() {
+        val dedicatedResult = build("compileJava", "-PuseDedicatedTasks=true");
+        assertEquals(SUCCESS, getTask(dedicatedResult, ":compileJava").getOutcome());
+        assertFalse(hasNullCheck(readFile("build/classes/java/main/pkg/Logic.class")));
+
+        val doLastResult = build("compileJava", "-PuseDedicatedTasks=false");
+        assertEquals(SUCCESS, getTask(doLastResult, ":compileJava").getOutcome());
+        assertTrue(hasNullCheck(readFile("build/classes/java/main/pkg/Logic.class")));
+    }
+
+    @Test
+    void compileTaskIsNotTakenFromCacheIfDedicatedTasksAreDisabled() {
+        build("compileJava", "--build-cache", "-PuseDedicatedTasks=true");
+        build("clean");
+
+        val result = build("compileJava", "--build-cache", "-PuseDedicatedTasks=false");
+        assertNotEquals(FROM_CACHE, getTask(result, ":compileJava").getOutcome());
+        assertTrue(hasNullCheck(readFile("build/classes/java/main/pkg/Logic.class")));
+    }
+
+    @Test
+    void dedicatedTaskReplacesClassesDirs() {
+        val result = build("jar", "-PuseDedicatedTasks=true");
+        assertEquals(SUCCESS, getTask(result, ":insertNullChecks").getOutcome());
+
+        assertFalse(hasNullCheck(readFile("build/classes/java/main/pkg/Logic.class")));
+        assertTrue(hasNullCheck(readFile("build/classes-with-null-checks/main/pkg/Logic.class")));
+        assertTrue(hasNullCheck(readJarEntry("build/libs/project.jar", "pkg/Logic.class")));
+
+        val secondResult = build("jar", "-PuseDedicatedTasks=true");
+        assertEquals(UP_TO_DATE, getTask(secondResult, ":insertNullChecks").getOutcome());
+    }
+
+
+    private BuildResult build(String... arguments) {
+        List<String> allArguments = new ArrayList<>();
+        allArguments.add("--stacktrace");
+        addAll(allArguments, arguments);
+
+        return GradleRunner.create()
+            .withProjectDir(projectDir.toFile())
+            .withPluginClasspath()
+            .withArguments(allArguments)
+            .forwardOutput()
+            .build();
+    }
+
+    private static BuildTask getTask(BuildResult result, String taskPath) {
+        val task = result.task(taskPath);
+        assertNotNull(task, taskPath + " was not executed");
+        return task;
+    }
+
+    @SneakyThrows
+    private void writeFile(String relativePath, String content) {
+        val path = projectDir.resolve(relativePath);
+        createDirectories(path.getParent());
+        write(path, content.getBytes(UTF_8));
+    }
+
+    @SneakyThrows
+    private byte[] readFile(String relativePath) {
+        return readAllBytes(projectDir.resolve(relativePath));
+    }
+
+    @SneakyThrows
+    private byte[] readJarEntry(String relativePath, String entryName) {
+        try (val zipFile = new ZipFile(projectDir.resolve(relativePath).toFile())) {
+            val entry = zipFile.getEntry(entryName);
+            assertNotNull(entry, entryName);
+            try (val in = zipFile.getInputStream(entry)) {
+                val out = new ByteArrayOutputStream();
+                val buffer = new byte[8192];
+                int read;
+                while ((read = in.read(buffer)) >= 0) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            }
+        }
+    }
+
+    /**
+     * The message is a string constant of the class, if a null check is inserted.
+     */
+    private static boolean hasNullCheck(byte[] bytecode) {
+        return new String(bytecode, ISO_8859_1).contains(NULL_CHECK_MESSAGE);
+    }
+
+}
@@ -0,0 +1,88 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.EXCLUSION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NOT_NULL_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NULLABLE_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_BASE_PACKAGES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.toolkit.StringUtils.substringAfterLast;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many annotation descriptors {@link AnnotationDescMatcher} classifies per second.
+ *
+ * <p>The descriptors are a mix of known nullability, validation and generated annotations,
+ * and of common annotations that don't match anything.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnnotationDescMatcherBenchmark {
+
+    private AnnotationDescMatcher matcher;
+
+    private final List<String> descs = new ArrayList<>();
+
+    private int nextIndex;
+
+    @Setup
+    public void setup() {
+        val nullableAnnotationSimpleClassNames = NULLABLE_ANNOTATION_CLASS_NAMES.stream()
+            .map(className -> substringAfterLast(className, "."))
+            .collect(toSet());
+        matcher = newAnnotationDescMatcher(
+            EXCLUSION_ANNOTATION_CLASS_NAMES,
+            VALIDATION_ANNOTATION_CLASS_NAMES,
+            VALIDATION_ANNOTATION_BASE_PACKAGES,
+            NOT_NULL_ANNOTATION_CLASS_NAMES,
+            NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES,
+            nullableAnnotationSimpleClassNames
+        );
+
+        NOT_NULL_ANNOTATION_CLASS_NAMES.forEach(className -> descs.add(classNameToDesc(className)));
+        NULLABLE_ANNOTATION_CLASS_NAMES.forEach(className -> descs.add(classNameToDesc(className)));
+        VALIDATION_ANNOTATION_BASE_PACKAGES.forEach(pkg -> descs.add(classNameToDesc(pkg + ".constraints.NotNull")));
+        descs.add("Ljavax/annotation/processing/Generated;");
+        descs.add("Lkotlin/Metadata;");
+        val knownDescsCount = descs.size();
+        for (int i = 0; i < knownDescsCount; ++i) {
+            // not matching descriptors are the most common ones
+            descs.add("Lcom/example/annotations/Unknown" + i + ';');
+            descs.add("Ljava/lang/Override;");
+            descs.add("Ljava/lang/Deprecated;");
+        }
+    }
+
+    private static String classNameToDesc(String className) {
+        return 'L' + className.replace('.', '/') + ';';
+    }
+
+
+    @Benchmark
+    public int classify() {
+        val index = nextIndex;
+        nextIndex = index + 1 < descs.size() ? index + 1 : 0;
+        return matcher.classify(descs.get(index));
+    }
+
+}
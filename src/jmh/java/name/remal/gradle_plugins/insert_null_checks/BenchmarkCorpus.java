@@ -0,0 +1,185 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.val;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Synthetic class files that resemble real-world compilation outputs.
+ *
+ * <p>Classes are generated with ASM, so the benchmarks don't depend on any compiler.
+ */
+public enum BenchmarkCorpus {
+
+    SMALL_POJOS {
+        @Override
+        Map<String, byte[]> generate() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < 2_000; ++i) {
+                val name = "corpus/pojo/Pojo" + i;
+                classes.put(name, generateClass(name, emptyList(), emptyList(), 12, 1, emptyList()));
+            }
+            return classes;
+        }
+    },
+
+    HUGE_GENERATED_CLASSES {
+        @Override
+        Map<String, byte[]> generate() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < 10; ++i) {
+                val name = "corpus/generated/Generated" + i;
+                classes.put(name, generateClass(
+                    name,
+                    emptyList(),
+                    singletonList("Ljavax/annotation/processing/Generated;"),
+                    3_000,
+                    4,
+                    emptyList()
+                ));
+            }
+            return classes;
+        }
+    },
+
+    KOTLIN_CLASSES {
+        @Override
+        Map<String, byte[]> generate() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < 1_000; ++i) {
+                val name = "corpus/kotlin/Kotlin" + i;
+                classes.put(name, generateClass(
+                    name,
+                    emptyList(),
+                    singletonList("Lkotlin/Metadata;"),
+                    20,
+                    2,
+                    emptyList()
+                ));
+            }
+            return classes;
+        }
+    },
+
+    GROOVY_CLOSURES {
+        @Override
+        Map<String, byte[]> generate() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < 1_000; ++i) {
+                val name = "corpus/groovy/Script$_run_closure" + i;
+                classes.put(name, generateClass(
+                    name,
+                    asList("org/codehaus/groovy/runtime/GeneratedClosure", "groovy/lang/GroovyObject"),
+                    emptyList(),
+                    2,
+                    1,
+                    emptyList()
+                ));
+            }
+            return classes;
+        }
+    },
+
+    VALIDATED_CLASSES {
+        @Override
+        Map<String, byte[]> generate() {
+            Map<String, byte[]> classes = new LinkedHashMap<>();
+            for (int i = 0; i < 1_000; ++i) {
+                val name = "corpus/validated/Validated" + i;
+                classes.put(name, generateClass(
+                    name,
+                    emptyList(),
+                    emptyList(),
+                    20,
+                    3,
+                    asList(
+                        "Ljavax/validation/constraints/NotNull;",
+                        "Ljakarta/validation/Valid;",
+                        "Lorg/hibernate/validator/constraints/Length;"
+                    )
+                ));
+            }
+            return classes;
+        }
+    },
+
+    ;
+
+
+    /**
+     * Returns class files by internal names.
+     */
+    abstract Map<String, byte[]> generate();
+
+
+    /**
+     * Generates a class with {@code methodsCount} public methods with {@code paramsCount} reference parameters.
+     * Every odd method is annotated with all {@code methodAnnotationDescs}.
+     */
+    private static byte[] generateClass(
+        String internalName,
+        List<String> interfaces,
+        List<String> classAnnotationDescs,
+        int methodsCount,
+        int paramsCount,
+        List<String> methodAnnotationDescs
+    ) {
+        val classWriter = new ClassWriter(COMPUTE_MAXS);
+        classWriter.visit(
+            V1_8,
+            ACC_PUBLIC | ACC_SUPER,
+            internalName,
+            null,
+            "java/lang/Object",
+            interfaces.toArray(new String[0])
+        );
+        classAnnotationDescs.forEach(desc -> classWriter.visitAnnotation(desc, true).visitEnd());
+
+        val constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        val descBuilder = new StringBuilder().append('(');
+        for (int paramIndex = 0; paramIndex < paramsCount; ++paramIndex) {
+            descBuilder.append(paramIndex % 2 == 0 ? "Ljava/lang/String;" : "Ljava/lang/Object;");
+        }
+        val desc = descBuilder.append(")V").toString();
+
+        for (int methodIndex = 0; methodIndex < methodsCount; ++methodIndex) {
+            val method = classWriter.visitMethod(ACC_PUBLIC, "method" + methodIndex, desc, null, null);
+            for (int paramIndex = 0; paramIndex < paramsCount; ++paramIndex) {
+                method.visitParameter("param" + paramIndex, 0);
+            }
+            if (methodIndex % 2 == 1) {
+                methodAnnotationDescs.forEach(annotationDesc ->
+                    method.visitAnnotation(annotationDesc, true).visitEnd()
+                );
+            }
+            method.visitCode();
+            method.visitInsn(RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+}
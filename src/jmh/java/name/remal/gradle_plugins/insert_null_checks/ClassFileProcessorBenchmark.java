@@ -0,0 +1,173 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.write;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.EXCLUSION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NOT_NULL_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NULLABLE_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_BASE_PACKAGES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.toolkit.StringUtils.substringAfterLast;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures how many class files {@link ClassFileProcessor} processes per second.
+ *
+ * <p>Every benchmark invocation processes a single class file of the corpus,
+ * so the reported throughput is in classes per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClassFileProcessorBenchmark {
+
+    @Param
+    public BenchmarkCorpus corpus;
+
+    @Param({"false", "true"})
+    public boolean preserveStackMapFrames;
+
+    @Param
+    public NullCheckStrategy nullCheckStrategy;
+
+
+    private FileSystem fileSystem;
+
+    private final List<Path> sourcePaths = new ArrayList<>();
+
+    private final List<Path> targetPaths = new ArrayList<>();
+
+    private final List<Path> upToDateTargetPaths = new ArrayList<>();
+
+    private final List<byte[]> bytecodes = new ArrayList<>();
+
+    private ClassFileProcessorConfig config;
+
+    private int nextIndex;
+
+    @Setup(Level.Trial)
+    @SneakyThrows
+    public void setup() {
+        config = ClassFileProcessorConfig.builder()
+            .includeGeneratedCode(true)
+            .preserveStackMapFrames(preserveStackMapFrames)
+            .nullCheckStrategy(nullCheckStrategy)
+            .inliningThreshold(35)
+            .annotationDescMatcher(newAnnotationDescMatcher(
+                EXCLUSION_ANNOTATION_CLASS_NAMES,
+                VALIDATION_ANNOTATION_CLASS_NAMES,
+                VALIDATION_ANNOTATION_BASE_PACKAGES,
+                NOT_NULL_ANNOTATION_CLASS_NAMES,
+                NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES,
+                NULLABLE_ANNOTATION_CLASS_NAMES.stream()
+                    .map(className -> substringAfterLast(className, "."))
+                    .collect(toSet())
+            ))
+            .fingerprint("benchmark")
+            .build();
+
+        fileSystem = Jimfs.newFileSystem(Configuration.unix());
+        val sourceDir = fileSystem.getPath("/source");
+        val targetDir = fileSystem.getPath("/target");
+        val upToDateTargetDir = fileSystem.getPath("/up-to-date-target");
+        for (val entry : corpus.generate().entrySet()) {
+            val relativePath = entry.getKey() + ".class";
+            val sourcePath = sourceDir.resolve(relativePath);
+            createDirectories(sourcePath.getParent());
+            write(sourcePath, entry.getValue());
+            sourcePaths.add(sourcePath);
+            targetPaths.add(targetDir.resolve(relativePath));
+            bytecodes.add(entry.getValue());
+
+            val upToDateTargetPath = upToDateTargetDir.resolve(relativePath);
+            upToDateTargetPaths.add(upToDateTargetPath);
+            newProcessor(sourcePath, upToDateTargetPath).process();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    @SneakyThrows
+    public void tearDown() {
+        fileSystem.close();
+    }
+
+
+    /**
+     * Reads a class file, processes it and writes the result.
+     *
+     * <p>The target file of the previous pass is deleted first, so the result is always written.
+     * Deleting a file of the in-memory file system is cheap compared to processing.
+     */
+    @Benchmark
+    @SneakyThrows
+    public void process() {
+        val index = nextIndex();
+        val targetPath = targetPaths.get(index);
+        deleteIfExists(targetPath);
+        newProcessor(sourcePaths.get(index), targetPath).process();
+    }
+
+    /**
+     * Reads a class file and processes it, but doesn't write the result,
+     * as the target file already has the same content.
+     */
+    @Benchmark
+    public void processToUpToDateTarget() {
+        val index = nextIndex();
+        newProcessor(sourcePaths.get(index), upToDateTargetPaths.get(index)).process();
+    }
+
+    /**
+     * Processes bytecode in memory, without any file system operations.
+     */
+    @Benchmark
+    public byte[] processBytecode() {
+        val index = nextIndex();
+        return newProcessor(sourcePaths.get(index), targetPaths.get(index))
+            .processBytecode(bytecodes.get(index));
+    }
+
+    private ClassFileProcessor newProcessor(Path sourcePath, Path targetPath) {
+        return ClassFileProcessor.builder()
+            .sourcePath(sourcePath)
+            .targetPath(targetPath)
+            .config(config)
+            .build();
+    }
+
+    private int nextIndex() {
+        val index = nextIndex;
+        nextIndex = index + 1 < sourcePaths.size() ? index + 1 : 0;
+        return index;
+    }
+
+}
@@ -0,0 +1,168 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.EXCLUSION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NOT_NULL_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NULLABLE_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_BASE_PACKAGES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.toolkit.StringUtils.substringAfterLast;
+import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.function.UnaryOperator;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.objectweb.asm.ClassWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of a call of an instrumented method at runtime,
+ * with null checks enabled and disabled by {@link InsertNullChecksProperties#getKillSwitchSystemPropertyName()}.
+ *
+ * <p>{@link ChecksMode#CHECKS_DISABLED} is expected to be as fast as {@link ChecksMode#UNINSTRUMENTED},
+ * as JIT compiler removes guarded checks completely.
+ * Every parameter combination is executed in a separate JVM, so the system property is read once per fork.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KillSwitchBenchmark {
+
+    public enum ChecksMode {
+        UNINSTRUMENTED,
+        CHECKS_ENABLED,
+        CHECKS_DISABLED,
+    }
+
+    private static final String KILL_SWITCH_SYSTEM_PROPERTY_NAME = "insert-null-checks.benchmark.disabled";
+
+    private static final String TARGET_CLASS_INTERNAL_NAME = "bench/Identity";
+
+
+    @Param
+    public ChecksMode mode;
+
+    @Param
+    public NullCheckStrategy nullCheckStrategy;
+
+
+    private UnaryOperator<Object> operator;
+
+    private Object value = "value";
+
+    @Setup(Level.Trial)
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        System.setProperty(KILL_SWITCH_SYSTEM_PROPERTY_NAME, String.valueOf(mode == ChecksMode.CHECKS_DISABLED));
+
+        byte[] bytecode = generateTargetClass();
+        if (mode != ChecksMode.UNINSTRUMENTED) {
+            val config = ClassFileProcessorConfig.builder()
+                .nullCheckStrategy(nullCheckStrategy)
+                .killSwitchSystemPropertyName(KILL_SWITCH_SYSTEM_PROPERTY_NAME)
+                .annotationDescMatcher(newAnnotationDescMatcher(
+                    EXCLUSION_ANNOTATION_CLASS_NAMES,
+                    VALIDATION_ANNOTATION_CLASS_NAMES,
+                    VALIDATION_ANNOTATION_BASE_PACKAGES,
+                    NOT_NULL_ANNOTATION_CLASS_NAMES,
+                    NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES,
+                    NULLABLE_ANNOTATION_CLASS_NAMES.stream()
+                        .map(className -> substringAfterLast(className, "."))
+                        .collect(toSet())
+                ))
+                .fingerprint("benchmark")
+                .build();
+            val processedBytecode = ClassFileProcessor.builder()
+                .config(config)
+                .build()
+                .processBytecode(bytecode);
+            if (processedBytecode == null) {
+                throw new IllegalStateException("Null checks haven't been inserted");
+            }
+            bytecode = processedBytecode;
+        }
+
+        val targetClass = new TargetClassLoader().defineTargetClass(bytecode);
+        operator = (UnaryOperator<Object>) targetClass.getConstructor().newInstance();
+    }
+
+
+    @Benchmark
+    public Object apply() {
+        return operator.apply(value);
+    }
+
+
+    /**
+     * Generates {@code UnaryOperator<Object>} implementation that returns its argument.
+     */
+    private static byte[] generateTargetClass() {
+        val classWriter = new ClassWriter(COMPUTE_MAXS | COMPUTE_FRAMES);
+        classWriter.visit(
+            V1_8,
+            ACC_PUBLIC | ACC_SUPER,
+            TARGET_CLASS_INTERNAL_NAME,
+            null,
+            "java/lang/Object",
+            new String[]{"java/util/function/UnaryOperator"}
+        );
+
+        val constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        val apply = classWriter.visitMethod(ACC_PUBLIC, "apply", "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+        apply.visitParameter("value", 0);
+        apply.visitCode();
+        apply.visitVarInsn(ALOAD, 1);
+        apply.visitInsn(ARETURN);
+        apply.visitMaxs(0, 0);
+        apply.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static class TargetClassLoader extends ClassLoader {
+
+        TargetClassLoader() {
+            super(KillSwitchBenchmark.class.getClassLoader());
+        }
+
+        Class<?> defineTargetClass(byte[] bytecode) {
+            return defineClass(TARGET_CLASS_INTERNAL_NAME.replace('/', '.'), bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
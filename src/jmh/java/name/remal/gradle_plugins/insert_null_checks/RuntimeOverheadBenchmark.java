@@ -0,0 +1,372 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toSet;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.EXCLUSION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NOT_NULL_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NULLABLE_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_BASE_PACKAGES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.toolkit.StringUtils.substringAfterLast;
+import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.AASTORE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACC_VARARGS;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ANEWARRAY;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.ICONST_2;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.function.Function;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the latency of a call of a method with inserted null checks,
+ * compared to the same method without null checks, for every {@link NullCheckStrategy}.
+ *
+ * <p>Every fixture is a {@code Function<Object, Object>} implementation, whose {@code apply()} method
+ * calls the measured method from a monomorphic call site. {@code apply()} is synthetic,
+ * so null checks are inserted into the measured method only.
+ *
+ * <p>Tiered compilation is disabled, so the measured code is compiled by C2 only.
+ * To compare inlining decisions, run the benchmark with
+ * {@code -XX:+UnlockDiagnosticVMOptions -XX:+PrintInlining} JVM arguments.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-XX:-TieredCompilation")
+public class RuntimeOverheadBenchmark {
+
+    private static final String FIXTURE_CLASS_INTERNAL_NAME = "bench/Fixture";
+
+    private static final String OBJECT_DESC = "Ljava/lang/Object;";
+
+    private static final int MANY_PARAMETERS_COUNT = 8;
+
+    public enum MethodShape {
+
+        /**
+         * {@code public void setValue(Object value) { this.value = value; }}
+         */
+        SETTER {
+            @Override
+            void generateMethod(ClassWriter classWriter) {
+                val setter = classWriter.visitMethod(ACC_PUBLIC, "setValue", "(" + OBJECT_DESC + ")V", null, null);
+                setter.visitParameter("value", 0);
+                setter.visitCode();
+                setter.visitVarInsn(ALOAD, 0);
+                setter.visitVarInsn(ALOAD, 1);
+                setter.visitFieldInsn(PUTFIELD, FIXTURE_CLASS_INTERNAL_NAME, "value", OBJECT_DESC);
+                setter.visitInsn(RETURN);
+                setter.visitMaxs(0, 0);
+                setter.visitEnd();
+            }
+
+            @Override
+            void generateCall(MethodVisitor apply) {
+                apply.visitVarInsn(ALOAD, 0);
+                apply.visitVarInsn(ALOAD, 1);
+                apply.visitMethodInsn(
+                    INVOKEVIRTUAL,
+                    FIXTURE_CLASS_INTERNAL_NAME,
+                    "setValue",
+                    "(" + OBJECT_DESC + ")V",
+                    false
+                );
+                apply.visitVarInsn(ALOAD, 0);
+            }
+        },
+
+        /**
+         * {@code public static Object first(Object... values) { return values[0]; }}
+         */
+        VARARGS {
+            @Override
+            void generateMethod(ClassWriter classWriter) {
+                val first = classWriter.visitMethod(
+                    ACC_PUBLIC | ACC_STATIC | ACC_VARARGS,
+                    "first",
+                    "([" + OBJECT_DESC + ")" + OBJECT_DESC,
+                    null,
+                    null
+                );
+                first.visitParameter("values", 0);
+                first.visitCode();
+                first.visitVarInsn(ALOAD, 0);
+                first.visitInsn(ICONST_0);
+                first.visitInsn(AALOAD);
+                first.visitInsn(ARETURN);
+                first.visitMaxs(0, 0);
+                first.visitEnd();
+            }
+
+            @Override
+            void generateCall(MethodVisitor apply) {
+                apply.visitInsn(ICONST_2);
+                apply.visitTypeInsn(ANEWARRAY, "java/lang/Object");
+                apply.visitInsn(DUP);
+                apply.visitInsn(ICONST_0);
+                apply.visitVarInsn(ALOAD, 1);
+                apply.visitInsn(AASTORE);
+                apply.visitInsn(DUP);
+                apply.visitInsn(ICONST_1);
+                apply.visitVarInsn(ALOAD, 1);
+                apply.visitInsn(AASTORE);
+                apply.visitMethodInsn(
+                    INVOKESTATIC,
+                    FIXTURE_CLASS_INTERNAL_NAME,
+                    "first",
+                    "([" + OBJECT_DESC + ")" + OBJECT_DESC,
+                    false
+                );
+            }
+        },
+
+        /**
+         * {@code public Fixture(Object value) { this.value = value; }}
+         */
+        CONSTRUCTOR {
+            @Override
+            void generateMethod(ClassWriter classWriter) {
+                val constructor = classWriter.visitMethod(
+                    ACC_PUBLIC,
+                    "<init>",
+                    "(" + OBJECT_DESC + ")V",
+                    null,
+                    null
+                );
+                constructor.visitParameter("value", 0);
+                constructor.visitCode();
+                constructor.visitVarInsn(ALOAD, 0);
+                constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+                constructor.visitVarInsn(ALOAD, 0);
+                constructor.visitVarInsn(ALOAD, 1);
+                constructor.visitFieldInsn(PUTFIELD, FIXTURE_CLASS_INTERNAL_NAME, "value", OBJECT_DESC);
+                constructor.visitInsn(RETURN);
+                constructor.visitMaxs(0, 0);
+                constructor.visitEnd();
+            }
+
+            @Override
+            void generateCall(MethodVisitor apply) {
+                apply.visitTypeInsn(NEW, FIXTURE_CLASS_INTERNAL_NAME);
+                apply.visitInsn(DUP);
+                apply.visitVarInsn(ALOAD, 1);
+                apply.visitMethodInsn(
+                    INVOKESPECIAL,
+                    FIXTURE_CLASS_INTERNAL_NAME,
+                    "<init>",
+                    "(" + OBJECT_DESC + ")V",
+                    false
+                );
+            }
+        },
+
+        /**
+         * {@code public static Object last(Object p0, ..., Object p7) { return p7; }}
+         */
+        MANY_PARAMETERS {
+            @Override
+            void generateMethod(ClassWriter classWriter) {
+                val last = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, "last", getDesc(), null, null);
+                for (int i = 0; i < MANY_PARAMETERS_COUNT; ++i) {
+                    last.visitParameter("p" + i, 0);
+                }
+                last.visitCode();
+                last.visitVarInsn(ALOAD, MANY_PARAMETERS_COUNT - 1);
+                last.visitInsn(ARETURN);
+                last.visitMaxs(0, 0);
+                last.visitEnd();
+            }
+
+            @Override
+            void generateCall(MethodVisitor apply) {
+                for (int i = 0; i < MANY_PARAMETERS_COUNT; ++i) {
+                    apply.visitVarInsn(ALOAD, 1);
+                }
+                apply.visitMethodInsn(INVOKESTATIC, FIXTURE_CLASS_INTERNAL_NAME, "last", getDesc(), false);
+            }
+
+            private String getDesc() {
+                val desc = new StringBuilder("(");
+                for (int i = 0; i < MANY_PARAMETERS_COUNT; ++i) {
+                    desc.append(OBJECT_DESC);
+                }
+                return desc.append(')').append(OBJECT_DESC).toString();
+            }
+        },
+        ;
+
+        /**
+         * Generates the measured method.
+         */
+        abstract void generateMethod(ClassWriter classWriter);
+
+        /**
+         * Generates a call of the measured method with the argument of {@code apply()}.
+         * The value returned by {@code apply()} is left on the stack.
+         */
+        abstract void generateCall(MethodVisitor apply);
+
+    }
+
+
+    /**
+     * A {@link NullCheckStrategy} of the measured method, or the baseline without null checks.
+     *
+     * <p>It's a single parameter, so the baseline is measured once per shape, not once per strategy.
+     */
+    public enum Instrumentation {
+        NOT_INSTRUMENTED,
+        INLINE_THROW,
+        REQUIRE_NON_NULL,
+        THROW_HELPER,
+        ;
+
+        NullCheckStrategy getNullCheckStrategy() {
+            return NullCheckStrategy.valueOf(name());
+        }
+    }
+
+
+    @Param
+    public MethodShape shape;
+
+    @Param
+    public Instrumentation instrumentation;
+
+
+    private Function<Object, Object> function;
+
+    private Object value = "value";
+
+    @Setup(Level.Trial)
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        byte[] bytecode = generateFixtureClass(shape);
+        if (instrumentation != Instrumentation.NOT_INSTRUMENTED) {
+            val config = ClassFileProcessorConfig.builder()
+                .nullCheckStrategy(instrumentation.getNullCheckStrategy())
+                .annotationDescMatcher(newAnnotationDescMatcher(
+                    EXCLUSION_ANNOTATION_CLASS_NAMES,
+                    VALIDATION_ANNOTATION_CLASS_NAMES,
+                    VALIDATION_ANNOTATION_BASE_PACKAGES,
+                    NOT_NULL_ANNOTATION_CLASS_NAMES,
+                    NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES,
+                    NULLABLE_ANNOTATION_CLASS_NAMES.stream()
+                        .map(className -> substringAfterLast(className, "."))
+                        .collect(toSet())
+                ))
+                .fingerprint("benchmark")
+                .build();
+            val processedBytecode = ClassFileProcessor.builder()
+                .config(config)
+                .build()
+                .processBytecode(bytecode);
+            if (processedBytecode == null) {
+                throw new IllegalStateException("Null checks haven't been inserted");
+            }
+            bytecode = processedBytecode;
+        }
+
+        val fixtureClass = new FixtureClassLoader().defineFixtureClass(bytecode);
+        function = (Function<Object, Object>) fixtureClass.getConstructor().newInstance();
+    }
+
+
+    @Benchmark
+    public Object call() {
+        return function.apply(value);
+    }
+
+
+    private static byte[] generateFixtureClass(MethodShape shape) {
+        val classWriter = new ClassWriter(COMPUTE_MAXS | COMPUTE_FRAMES);
+        classWriter.visit(
+            V1_8,
+            ACC_PUBLIC | ACC_SUPER,
+            FIXTURE_CLASS_INTERNAL_NAME,
+            null,
+            "java/lang/Object",
+            new String[]{"java/util/function/Function"}
+        );
+
+        classWriter.visitField(ACC_PRIVATE, "value", OBJECT_DESC, null, null).visitEnd();
+
+        val constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        shape.generateMethod(classWriter);
+
+        val apply = classWriter.visitMethod(
+            ACC_PUBLIC | ACC_SYNTHETIC,
+            "apply",
+            "(" + OBJECT_DESC + ")" + OBJECT_DESC,
+            null,
+            null
+        );
+        apply.visitCode();
+        shape.generateCall(apply);
+        apply.visitInsn(ARETURN);
+        apply.visitMaxs(0, 0);
+        apply.visitEnd();
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static class FixtureClassLoader extends ClassLoader {
+
+        FixtureClassLoader() {
+            super(RuntimeOverheadBenchmark.class.getClassLoader());
+        }
+
+        Class<?> defineFixtureClass(byte[] bytecode) {
+            return defineClass(FIXTURE_CLASS_INTERNAL_NAME.replace('/', '.'), bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,190 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Arrays.binarySearch;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+
+/**
+ * Immutable matcher that classifies annotation descriptors.
+ *
+ * <p>All exact, prefix and suffix rules are compiled into a prefix trie and a reversed-suffix trie,
+ * so {@link #classify(String)} walks a descriptor at most twice and doesn't allocate anything.
+ * An instance is thread-safe and can be shared by all processors of a task.
+ */
+@RequiredArgsConstructor(access = PRIVATE)
+class AnnotationDescMatcher {
+
+    public static final int EXCLUSION = 1;
+    public static final int VALIDATION = 1 << 1;
+    public static final int NON_NULL = 1 << 2;
+    public static final int NULLABLE = 1 << 3;
+    public static final int GENERATED = 1 << 4;
+    public static final int KOTLIN_METADATA = 1 << 5;
+    public static final int NON_NULL_BY_DEFAULT = 1 << 6;
+
+
+    public static AnnotationDescMatcher newAnnotationDescMatcher(
+        Collection<String> exclusionAnnotationClassNames,
+        Collection<String> validationAnnotationClassNames,
+        Collection<String> validationAnnotationBasePackages,
+        Collection<String> nonNullAnnotationClassNames,
+        Collection<String> nonNullByDefaultAnnotationClassNames,
+        Collection<String> nullableAnnotationSimpleClassNames
+    ) {
+        val builder = new Builder();
+        exclusionAnnotationClassNames.forEach(name ->
+            builder.exact(classNameToDesc(name), EXCLUSION)
+        );
+        validationAnnotationClassNames.forEach(name ->
+            builder.exact(classNameToDesc(name), VALIDATION)
+        );
+        validationAnnotationBasePackages.forEach(pkg ->
+            builder.prefix('L' + classNameToInternalName(pkg) + '/', VALIDATION)
+        );
+        nonNullAnnotationClassNames.forEach(name ->
+            builder.exact(classNameToDesc(name), NON_NULL)
+        );
+        nonNullByDefaultAnnotationClassNames.forEach(name ->
+            builder.exact(classNameToDesc(name), NON_NULL_BY_DEFAULT)
+        );
+        nullableAnnotationSimpleClassNames.forEach(name ->
+            builder.suffix('/' + name + ';', NULLABLE)
+        );
+        builder.suffix("/Generated;", GENERATED);
+        builder.exact("Lkotlin/Metadata;", KOTLIN_METADATA);
+        builder.suffix("/kotlin/Metadata;", KOTLIN_METADATA); // relocated Kotlin
+        return builder.build();
+    }
+
+    private static String classNameToInternalName(String className) {
+        return className.replace('.', '/');
+    }
+
+    private static String classNameToDesc(String className) {
+        return 'L' + classNameToInternalName(className) + ';';
+    }
+
+
+    private final Node prefixRoot;
+
+    private final Node suffixRoot;
+
+    /**
+     * Returns a bit mask of categories matching the descriptor.
+     */
+    public int classify(String desc) {
+        int categories = 0;
+        val length = desc.length();
+
+        Node node = prefixRoot;
+        for (int i = 0; node != null; ++i) {
+            categories |= node.partialCategories;
+            if (i == length) {
+                categories |= node.terminalCategories;
+                break;
+            }
+            node = node.getChild(desc.charAt(i));
+        }
+
+        node = suffixRoot;
+        for (int i = length - 1; node != null; --i) {
+            categories |= node.partialCategories;
+            if (i < 0) {
+                break;
+            }
+            node = node.getChild(desc.charAt(i));
+        }
+
+        return categories;
+    }
+
+    public boolean matches(String desc, int categories) {
+        return (classify(desc) & categories) != 0;
+    }
+
+
+    static class Builder {
+
+        private final BuilderNode prefixRoot = new BuilderNode();
+
+        private final BuilderNode suffixRoot = new BuilderNode();
+
+        public Builder exact(String desc, int categories) {
+            prefixRoot.getOrCreateNode(desc, false).terminalCategories |= categories;
+            return this;
+        }
+
+        public Builder prefix(String descPrefix, int categories) {
+            prefixRoot.getOrCreateNode(descPrefix, false).partialCategories |= categories;
+            return this;
+        }
+
+        public Builder suffix(String descSuffix, int categories) {
+            suffixRoot.getOrCreateNode(descSuffix, true).partialCategories |= categories;
+            return this;
+        }
+
+        public AnnotationDescMatcher build() {
+            return new AnnotationDescMatcher(prefixRoot.toNode(), suffixRoot.toNode());
+        }
+
+    }
+
+    private static class BuilderNode {
+
+        private final Map<Character, BuilderNode> children = new TreeMap<>();
+
+        private int partialCategories;
+
+        private int terminalCategories;
+
+        public BuilderNode getOrCreateNode(String str, boolean reversed) {
+            BuilderNode node = this;
+            val length = str.length();
+            for (int i = 0; i < length; ++i) {
+                val ch = str.charAt(reversed ? length - 1 - i : i);
+                node = node.children.computeIfAbsent(ch, __ -> new BuilderNode());
+            }
+            return node;
+        }
+
+        public Node toNode() {
+            val chars = new char[children.size()];
+            val nodes = new Node[children.size()];
+            int index = 0;
+            for (val entry : children.entrySet()) {
+                chars[index] = entry.getKey();
+                nodes[index] = entry.getValue().toNode();
+                ++index;
+            }
+            return new Node(chars, nodes, partialCategories, terminalCategories);
+        }
+
+    }
+
+    @RequiredArgsConstructor
+    private static class Node {
+
+        private final char[] chars;
+
+        private final Node[] children;
+
+        private final int partialCategories;
+
+        private final int terminalCategories;
+
+        @Nullable
+        public Node getChild(char ch) {
+            val index = binarySearch(chars, ch);
+            return index >= 0 ? children[index] : null;
+        }
+
+    }
+
+}
@@ -0,0 +1,286 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.deleteIfExists;
+import static java.util.Arrays.stream;
+import static java.util.Calendar.FEBRUARY;
+import static java.util.Locale.ROOT;
+import static java.util.stream.Collectors.toList;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.CONTRACT_INDEX_PATH;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.parseContractIndex;
+import static name.remal.gradle_plugins.insert_null_checks.InputStreamUtils.toByteArray;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.createTempFileFor;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.moveIfChanged;
+import static org.apache.commons.compress.archivers.zip.ZipArchiveEntry.PLATFORM_UNIX;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.GregorianCalendar;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Counter;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Timer;
+import org.apache.commons.compress.archivers.zip.Zip64ExtendedInformationExtraField;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipExtraField;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+/**
+ * Streams entries of a JAR (or any ZIP) archive into a new archive, inserting null checks into eligible classes.
+ *
+ * <p>Classes are processed in memory. All other entries (including not eligible classes)
+ * are copied as raw compressed bytes, without inflating and deflating them again.
+ *
+ * <p>Signature files of signed archives are not copied, if any class is processed, as digests of processed classes
+ * don't match them anymore. The archive becomes unsigned, otherwise its classes would fail to load
+ * with {@link SecurityException}. If no class is processed, the archive is written again, with signature files,
+ * by copying raw entries only.
+ *
+ * <p>If {@link #contractIndex} is set, the contract index is written as the last entry of the archive.
+ * Contracts of classes that are not processed are taken from the index of the source archive, if it has one.
+ * The entry has the time of the replaced index entry, or a constant time, so the archive is reproducible.
+ */
+@Builder
+class ArchiveProcessor {
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
+    private static final String MULTI_RELEASE_PREFIX = "META-INF/versions/";
+
+    private static final String META_INF_PREFIX = "META-INF/";
+
+    /**
+     * The same constant time that Gradle uses for entries of reproducible archives.
+     */
+    private static final long CONSTANT_ENTRY_TIME = new GregorianCalendar(1980, FEBRUARY, 1, 0, 0, 0)
+        .getTimeInMillis();
+
+
+    @NonNull
+    private final Path sourcePath;
+
+    @NonNull
+    private final Path targetPath;
+
+    /**
+     * Only classes of these packages (and their subpackages) are processed. If empty, all classes are processed.
+     */
+    @NonNull
+    private final Collection<String> includedPackages;
+
+    @NonNull
+    private final ClassFileProcessorConfig config;
+
+    @Nullable
+    private final ClassHierarchyIndex classHierarchyIndex;
+
+    @Nullable
+    private final PackageInfoIndex packageInfoIndex;
+
+    @Nullable
+    private final ProcessedClassCache outputCache;
+
+    @Nullable
+    private final ContractIndex contractIndex;
+
+    @NonNull
+    private final ProcessingBudget processingBudget;
+
+    @NonNull
+    private final ProcessingMetrics metrics;
+
+    /**
+     * The archive is written to a temporary file first. It replaces the target archive only if its content differs.
+     */
+    @SneakyThrows
+    public void process() {
+        val tempPath = createTempFileFor(targetPath);
+        try {
+            val result = writeArchive(tempPath, true);
+            if (result.isSignatureRemoved() && !result.isAnyClassProcessed()) {
+                // the signature is still valid
+                writeArchive(tempPath, false);
+            } else if (result.isSignatureRemoved()) {
+                metrics.addWarning("Signature of " + sourcePath + " has been removed, as its classes are processed");
+            }
+
+            if (!moveIfChanged(tempPath, targetPath)) {
+                metrics.increment(Counter.WRITES_SKIPPED);
+            }
+        } finally {
+            deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * @param processClasses if {@code false}, all entries (including signature files) are copied as is
+     */
+    @SneakyThrows
+    private ArchiveWriteResult writeArchive(Path archivePath, boolean processClasses) {
+        val includedPackagePrefixes = includedPackages.stream()
+            .map(pkg -> pkg.replace('.', '/') + '/')
+            .collect(toList());
+
+        try (
+            val zipFile = ZipFile.builder().setPath(sourcePath).get();
+            val out = new ZipArchiveOutputStream(archivePath)
+        ) {
+            ContractIndex sourceContractIndex = new ContractIndex();
+            long contractIndexTime = CONSTANT_ENTRY_TIME;
+            boolean signatureRemoved = false;
+            boolean anyClassProcessed = false;
+            val entries = zipFile.getEntriesInPhysicalOrder();
+            while (entries.hasMoreElements()) {
+                val entry = entries.nextElement();
+                if (processClasses && isSignatureFile(entry)) {
+                    signatureRemoved = true;
+                    continue;
+                }
+
+                if (contractIndex != null && entry.getName().equals(CONTRACT_INDEX_PATH)) {
+                    try (val in = zipFile.getInputStream(entry)) {
+                        sourceContractIndex = parseContractIndex(new String(toByteArray(in), UTF_8));
+                    }
+                    contractIndexTime = entry.getTime();
+                    continue;
+                }
+
+                if (processClasses && isProcessingCandidate(entry, includedPackagePrefixes)) {
+                    metrics.increment(Counter.FILES_SCANNED);
+
+                    val readStartNanos = System.nanoTime();
+                    final byte[] bytecode;
+                    try (val in = zipFile.getInputStream(entry)) {
+                        bytecode = toByteArray(in);
+                    }
+                    metrics.addTimeSince(Timer.READ, readStartNanos);
+                    metrics.add(Counter.BYTES_READ, bytecode.length);
+
+                    val processedBytecode = processingBudget.call(bytecode.length, metrics, () ->
+                        ClassFileProcessor.builder()
+                            .config(config)
+                            .classHierarchyIndex(classHierarchyIndex)
+                            .packageInfoIndex(packageInfoIndex)
+                            .outputCache(outputCache)
+                            // versioned classes would replace contracts of the base ones
+                            .contractIndex(entry.getName().startsWith(MULTI_RELEASE_PREFIX) ? null : contractIndex)
+                            .metrics(metrics)
+                            .build()
+                            .processBytecode(bytecode)
+                    );
+                    if (processedBytecode != null) {
+                        val writeStartNanos = System.nanoTime();
+                        out.putArchiveEntry(newProcessedEntry(entry));
+                        out.write(processedBytecode);
+                        out.closeArchiveEntry();
+                        metrics.addTimeSince(Timer.WRITE, writeStartNanos);
+                        metrics.add(Counter.BYTES_WRITTEN, processedBytecode.length);
+                        anyClassProcessed = true;
+                        continue;
+                    }
+                }
+
+                try (val rawIn = zipFile.getRawInputStream(entry)) {
+                    out.addRawArchiveEntry(entry, rawIn);
+                }
+            }
+
+            if (contractIndex != null) {
+                sourceContractIndex.addAll(contractIndex);
+                val contractIndexEntry = new ZipArchiveEntry(CONTRACT_INDEX_PATH);
+                // otherwise, the current time is set by the output stream
+                contractIndexEntry.setTime(contractIndexTime);
+                out.putArchiveEntry(contractIndexEntry);
+                out.write(sourceContractIndex.toBytes());
+                out.closeArchiveEntry();
+            }
+
+            return new ArchiveWriteResult(signatureRemoved, anyClassProcessed);
+        }
+    }
+
+    @Value
+    private static class ArchiveWriteResult {
+        boolean signatureRemoved;
+        boolean anyClassProcessed;
+    }
+
+    /**
+     * Copies metadata of the original entry. The entry itself can't be reused, as its sizes and CRC differ.
+     */
+    private static ZipArchiveEntry newProcessedEntry(ZipArchiveEntry entry) {
+        val processedEntry = new ZipArchiveEntry(entry.getName());
+        processedEntry.setMethod(entry.getMethod());
+        processedEntry.setTime(entry.getTime());
+        processedEntry.setComment(entry.getComment());
+        processedEntry.setInternalAttributes(entry.getInternalAttributes());
+        if (entry.getPlatform() == PLATFORM_UNIX) {
+            processedEntry.setUnixMode(entry.getUnixMode());
+        }
+        processedEntry.setExternalAttributes(entry.getExternalAttributes());
+        processedEntry.setExtraFields(stream(entry.getExtraFields())
+            // ZIP64 sizes are written by the output stream, if needed
+            .filter(field -> !(field instanceof Zip64ExtendedInformationExtraField))
+            .toArray(ZipExtraField[]::new)
+        );
+        return processedEntry;
+    }
+
+    /**
+     * Signature files are located directly in {@code META-INF} directory, see JAR File Specification.
+     */
+    private static boolean isSignatureFile(ZipArchiveEntry entry) {
+        val name = entry.getName();
+        if (entry.isDirectory()
+            || !name.regionMatches(true, 0, META_INF_PREFIX, 0, META_INF_PREFIX.length())
+            || name.indexOf('/', META_INF_PREFIX.length()) >= 0
+        ) {
+            return false;
+        }
+
+        val fileName = name.substring(META_INF_PREFIX.length()).toUpperCase(ROOT);
+        return fileName.endsWith(".SF")
+            || fileName.endsWith(".DSA")
+            || fileName.endsWith(".RSA")
+            || fileName.endsWith(".EC")
+            || fileName.startsWith("SIG-");
+    }
+
+    private static boolean isProcessingCandidate(ZipArchiveEntry entry, List<String> includedPackagePrefixes) {
+        if (entry.isDirectory()) {
+            return false;
+        }
+
+        String name = entry.getName();
+        if (!name.endsWith(CLASS_FILE_EXTENSION)) {
+            return false;
+        }
+
+        if (name.startsWith(MULTI_RELEASE_PREFIX)) {
+            // `META-INF/versions/<version>/<class file path>`
+            val classPathStart = name.indexOf('/', MULTI_RELEASE_PREFIX.length());
+            if (classPathStart < 0) {
+                return false;
+            }
+            name = name.substring(classPathStart + 1);
+        }
+
+        if (includedPackagePrefixes.isEmpty()) {
+            return true;
+        }
+
+        for (val prefix : includedPackagePrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,90 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static lombok.AccessLevel.PRIVATE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.NEWARRAY;
+import static org.objectweb.asm.Opcodes.RET;
+
+import lombok.NoArgsConstructor;
+import lombok.val;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LookupSwitchInsnNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Estimates sizes of method bodies in the same units as HotSpot's inlining thresholds
+ * ({@code -XX:MaxInlineSize}, {@code -XX:FreqInlineSize}): bytes of the {@code Code} attribute's bytecode.
+ *
+ * <p>The estimation is exact, except for {@code LDC} instructions (that take 3 bytes instead of 2
+ * if the constant pool is larger than 256 entries) and for jumps that become {@code GOTO_W}.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class BytecodeSizeUtils {
+
+    public static int estimateCodeSize(InsnList insns) {
+        int size = 0;
+        for (AbstractInsnNode insn = insns.getFirst(); insn != null; insn = insn.getNext()) {
+            size += estimateInsnSize(insn, size);
+        }
+        return size;
+    }
+
+    @SuppressWarnings("java:S1479")
+    private static int estimateInsnSize(AbstractInsnNode insn, int offset) {
+        switch (insn.getType()) {
+            case AbstractInsnNode.INSN:
+                return 1;
+            case AbstractInsnNode.INT_INSN:
+                return insn.getOpcode() == BIPUSH || insn.getOpcode() == NEWARRAY ? 2 : 3;
+            case AbstractInsnNode.VAR_INSN:
+                return estimateVarInsnSize((VarInsnNode) insn);
+            case AbstractInsnNode.TYPE_INSN:
+            case AbstractInsnNode.FIELD_INSN:
+                return 3;
+            case AbstractInsnNode.METHOD_INSN:
+                return insn.getOpcode() == INVOKEINTERFACE ? 5 : 3;
+            case AbstractInsnNode.INVOKE_DYNAMIC_INSN:
+                return 5;
+            case AbstractInsnNode.JUMP_INSN:
+                return 3;
+            case AbstractInsnNode.LDC_INSN:
+                val cst = ((LdcInsnNode) insn).cst;
+                return cst instanceof Long || cst instanceof Double ? 3 : 2;
+            case AbstractInsnNode.IINC_INSN:
+                val iinc = (IincInsnNode) insn;
+                return iinc.var > 0xFF || iinc.incr < Byte.MIN_VALUE || iinc.incr > Byte.MAX_VALUE ? 6 : 3;
+            case AbstractInsnNode.TABLESWITCH_INSN:
+                return 1 + getSwitchPadding(offset) + 12 + 4 * ((TableSwitchInsnNode) insn).labels.size();
+            case AbstractInsnNode.LOOKUPSWITCH_INSN:
+                return 1 + getSwitchPadding(offset) + 8 + 8 * ((LookupSwitchInsnNode) insn).labels.size();
+            case AbstractInsnNode.MULTIANEWARRAY_INSN:
+                return 4;
+            default:
+                // labels, frames, and line numbers aren't a part of bytecode
+                return 0;
+        }
+    }
+
+    private static int estimateVarInsnSize(VarInsnNode insn) {
+        if (insn.var > 0xFF) {
+            // `WIDE` prefix
+            return 4;
+        } else if (insn.var <= 3 && insn.getOpcode() != RET) {
+            // `xLOAD_n` and `xSTORE_n` forms
+            return 1;
+        } else {
+            return 2;
+        }
+    }
+
+    private static int getSwitchPadding(int offset) {
+        // switch operands are aligned by 4 bytes, relatively to the start of the method
+        return 3 - (offset & 3);
+    }
+
+}
@@ -1,59 +1,110 @@
 package name.remal.gradle_plugins.insert_null_checks;
 
-import static java.nio.file.Files.createDirectories;
-import static java.nio.file.Files.newInputStream;
-import static java.nio.file.Files.write;
+import static java.lang.Math.max;
+import static java.nio.file.Files.readAllBytes;
 import static java.util.Collections.emptyList;
-import static java.util.stream.Collectors.toCollection;
-import static java.util.stream.Collectors.toList;
+import static java.util.Objects.requireNonNull;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.EXCLUSION;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.GENERATED;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.KOTLIN_METADATA;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.NON_NULL_BY_DEFAULT;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.NULLABLE;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.VALIDATION;
+import static name.remal.gradle_plugins.insert_null_checks.BytecodeSizeUtils.estimateCodeSize;
 import static name.remal.gradle_plugins.insert_null_checks.BytecodeTestUtils.wrapWithTestClassVisitors;
+import static name.remal.gradle_plugins.insert_null_checks.ClassHeader.readClassHeader;
+import static name.remal.gradle_plugins.insert_null_checks.NullCheckThrowHelper.THROW_HELPER_DESC;
+import static name.remal.gradle_plugins.insert_null_checks.NullCheckedParametersScanner.findNullCheckedParameters;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.writeIfChanged;
+import static name.remal.gradle_plugins.insert_null_checks.PrivateMethodCallGraph.findNonNullParametersOfPrivateMethods;
+import static name.remal.gradle_plugins.insert_null_checks.SerialVersionUidUtils.createSerialVersionUidField;
+import static name.remal.gradle_plugins.insert_null_checks.SerialVersionUidUtils.isDefaultSerialVersionUidUsed;
 import static name.remal.gradle_plugins.toolkit.InTestFlags.isInUnitTest;
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
 import static org.objectweb.asm.ClassWriter.COMPUTE_FRAMES;
 import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
 import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
 import static org.objectweb.asm.Opcodes.ACC_ENUM;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
 import static org.objectweb.asm.Opcodes.ACC_MANDATED;
 import static org.objectweb.asm.Opcodes.ACC_MODULE;
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
 import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
 import static org.objectweb.asm.Opcodes.ACC_STATIC;
 import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
 import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASM9;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.F_SAME;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
 import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V1_6;
+import static org.objectweb.asm.Opcodes.V1_7;
+import static org.objectweb.asm.Opcodes.V9;
 import static org.objectweb.asm.Type.getArgumentTypes;
 import static org.objectweb.asm.Type.getDescriptor;
+import static org.objectweb.asm.Type.getInternalName;
 import static org.objectweb.asm.Type.getReturnType;
 
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Objects;
 import javax.annotation.Nullable;
-import lombok.CustomLog;
 import lombok.SneakyThrows;
 import lombok.experimental.SuperBuilder;
 import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.ClassSkipReason;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Counter;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.MethodSizeChange;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.MethodSkipReason;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Timer;
 import org.jetbrains.annotations.VisibleForTesting;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.FieldVisitor;
+import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
 import org.objectweb.asm.tree.AbstractInsnNode;
 import org.objectweb.asm.tree.AnnotationNode;
 import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.FrameNode;
 import org.objectweb.asm.tree.InsnList;
 import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.IntInsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
 import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
 import org.objectweb.asm.tree.LineNumberNode;
 import org.objectweb.asm.tree.MethodInsnNode;
 import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.tree.VarInsnNode;
 
+/**
+ * Inserts null checks into a single class.
+ *
+ * <p>This class is also used by {@link InsertNullChecksJavacPlugin} inside of the compiler,
+ * so it must not depend on Gradle API.
+ */
 @SuperBuilder
-@CustomLog
 class ClassFileProcessor extends ClassFileProcessorParams {
 
     private static final boolean IN_TEST = isInUnitTest();
@@ -62,50 +113,134 @@ class ClassFileProcessor extends ClassFileProcessorParams {
     private static final String INSERT_NULL_CHECKS_IN_TESTS_ONLY_DESC =
         getDescriptor(InsertNullChecksInTestsOnly.class);
 
-    private static final String GENERATED_DESC_SUFFIX = "/Generated;";
+    private static final String NPE_INTERNAL_NAME = getInternalName(NullPointerException.class);
 
+    private static final String OBJECTS_INTERNAL_NAME = getInternalName(Objects.class);
 
-    private final Set<String> exclusionAnnotationDescs = exclusionAnnotationClassNames.stream()
-        .map(ClassFileProcessor::classNameToDescription)
-        .collect(toCollection(LinkedHashSet::new));
+    /**
+     * Max stack size of all {@link NullCheckStrategy}-s.
+     */
+    private static final int NULL_CHECK_MAX_STACK = 3;
 
-    private final Set<String> validationAnnotationDescs = validationAnnotationClassNames.stream()
-        .map(ClassFileProcessor::classNameToDescription)
-        .collect(toCollection(LinkedHashSet::new));
 
-    private final List<String> validationAnnotationDescPrefixes = validationAnnotationBasePackages.stream()
-        .map(pkg -> classNameToDescription(pkg + '.').replace(";", ""))
-        .collect(toList());
+    private final Map<String, MethodNode> processedMethods = new LinkedHashMap<>();
 
-    private final Set<String> nonNullAnnotationDescs = nonNullAnnotationClassNames.stream()
-        .map(ClassFileProcessor::classNameToDescription)
-        .collect(toCollection(LinkedHashSet::new));
+    private final List<MethodNode> addedMethods = new ArrayList<>();
 
-    private final List<String> nullableAnnotationDescs = nullableAnnotationSimpleClassNames.stream()
-        .map(name -> '/' + name + 'L')
-        .collect(toList());
+    private final List<FieldNode> addedFields = new ArrayList<>();
 
+    private final NullCheckThrowHelper throwHelper = new NullCheckThrowHelper();
+
+    private final NullChecksKillSwitch killSwitch = new NullChecksKillSwitch();
 
     private boolean changed;
 
-    @SneakyThrows
-    @SuppressWarnings("java:S3776")
     public void process() {
-        val classNode = new ClassNode();
-        ClassReader classReader;
-        try (val inputStream = newInputStream(sourcePath)) {
-            classReader = new ClassReader(inputStream);
-            classReader.accept(classNode, 0);
+        if (sourcePath == null || targetPath == null) {
+            throw new IllegalStateException("Both sourcePath and targetPath must be set to process a class file");
         }
 
-        if (classNode.invisibleAnnotations != null && !IN_TEST) {
-            for (val annotation : classNode.invisibleAnnotations) {
-                if (annotation.desc.equals(INSERT_NULL_CHECKS_IN_TESTS_ONLY_DESC)) {
-                    return;
-                }
+        process(sourcePath, targetPath);
+    }
+
+    @SneakyThrows
+    private void process(Path sourcePath, Path targetPath) {
+        val readStartNanos = System.nanoTime();
+        val sourceBytecode = readAllBytes(sourcePath);
+        metrics.addTimeSince(Timer.READ, readStartNanos);
+        metrics.add(Counter.BYTES_READ, sourceBytecode.length);
+
+        val processedBytecode = processBytecode(sourceBytecode);
+        if (processedBytecode == null && sourcePath.equals(targetPath)) {
+            return;
+        }
+
+        val writeStartNanos = System.nanoTime();
+        try {
+            writeBytecode(targetPath, processedBytecode != null ? processedBytecode : sourceBytecode);
+        } finally {
+            metrics.addTimeSince(Timer.WRITE, writeStartNanos);
+        }
+    }
+
+    private void writeBytecode(Path targetPath, byte[] bytecode) {
+        // the class file can be read by other processors at the same time, so it's replaced atomically
+        if (writeIfChanged(targetPath, bytecode)) {
+            metrics.add(Counter.BYTES_WRITTEN, bytecode.length);
+        } else {
+            metrics.increment(Counter.WRITES_SKIPPED);
+        }
+    }
+
+    /**
+     * Returns processed bytecode, or {@code null} if the class hasn't been changed.
+     */
+    @Nullable
+    public byte[] processBytecode(byte[] bytecode) {
+        val processedBytecode = transformOrGetCached(bytecode);
+        if (contractIndex != null) {
+            // the contract is read from the final bytecode, so it's the same for cached results
+            contractIndex.addClass(
+                processedBytecode != null ? processedBytecode : bytecode,
+                config.getKillSwitchSystemPropertyName()
+            );
+        }
+        return processedBytecode;
+    }
+
+    @Nullable
+    private byte[] transformOrGetCached(byte[] bytecode) {
+        metrics.increment(Counter.CLASSES_PROCESSED);
+
+        val parseStartNanos = System.nanoTime();
+        val classReader = new ClassReader(bytecode);
+        val packageCategories = packageInfoIndex != null
+            ? packageInfoIndex.getPackageCategories(classReader.getClassName())
+            : 0;
+        metrics.addTimeSince(Timer.PARSE, parseStartNanos);
+
+        if (outputCache == null || config.isCheckInheritedValidationAnnotations()) {
+            return transformBytecode(classReader, packageCategories);
+        }
+
+        // package annotations are not a part of the class file, so they are a part of the key
+        val cacheKey = outputCache.getKey(config.getFingerprint() + ':' + packageCategories, bytecode);
+        val cachedBytecode = outputCache.get(cacheKey);
+        if (cachedBytecode != null) {
+            metrics.increment(Counter.CACHE_HITS);
+            if (cachedBytecode.length == 0) {
+                return null;
             }
+            metrics.increment(Counter.CLASSES_REWRITTEN);
+            return cachedBytecode;
+        }
+
+        val processedBytecode = transformBytecode(classReader, packageCategories);
+        outputCache.put(cacheKey, processedBytecode);
+        return processedBytecode;
+    }
+
+    @Nullable
+    @SuppressWarnings("java:S3776")
+    private byte[] transformBytecode(ClassReader classReader, int packageCategories) {
+        val parseStartNanos = System.nanoTime();
+        val classHeader = readClassHeader(classReader);
+        val skipReason = getClassSkipReason(classHeader, packageCategories);
+        if (skipReason != null) {
+            metrics.addTimeSince(Timer.PARSE, parseStartNanos);
+            metrics.classSkipped(skipReason);
+            return null;
+        }
+
+        if (!isWholeClassAnalysisNeeded()) {
+            metrics.addTimeSince(Timer.PARSE, parseStartNanos);
+            return transformStreaming(classReader, classHeader);
         }
 
+        val classNode = new ClassNode();
+        classReader.accept(classNode, 0);
+        metrics.addTimeSince(Timer.PARSE, parseStartNanos);
+
         if (classNode.fields == null) {
             classNode.fields = new ArrayList<>();
         }
@@ -115,124 +250,485 @@ class ClassFileProcessor extends ClassFileProcessorParams {
         }
 
 
+        val transformStartNanos = System.nanoTime();
         processClass(classNode);
+        metrics.addTimeSince(Timer.TRANSFORM, transformStartNanos);
+
+
+        if (!changed) {
+            metrics.classSkipped(ClassSkipReason.NO_METHODS_TO_INSTRUMENT);
+            return null;
+        }
+
+        if (throwHelper.isUsed()) {
+            val throwHelperMethod = throwHelper.createMethod(isFramesInsertionNeeded(classNode));
+            classNode.methods.add(throwHelperMethod);
+            addedMethods.add(throwHelperMethod);
+        }
+
+        if (killSwitch.isUsed()) {
+            addKillSwitch(classNode);
+        }
+
+        metrics.increment(Counter.CLASSES_REWRITTEN);
+        val writeStartNanos = System.nanoTime();
+        try {
+            return writeClass(classReader, classNode);
+        } finally {
+            metrics.addTimeSince(Timer.WRITE, writeStartNanos);
+        }
+    }
+
+    /**
+     * Methods of a class can be processed independently of each other,
+     * unless checks of private methods are elided by {@link PrivateMethodCallGraph}.
+     */
+    private boolean isWholeClassAnalysisNeeded() {
+        return config.isIncludePrivateMethods() && config.isEliminateRedundantChecks();
+    }
+
+    /**
+     * Processes methods one by one while the class is being read, so only one method is kept in memory.
+     * Methods that can't be instrumented are copied without building their instructions.
+     *
+     * <p>Parsing and writing are interleaved with transformation here, so they are measured by one timer.
+     */
+    @Nullable
+    private byte[] transformStreaming(ClassReader classReader, ClassHeader classHeader) {
+        val transformStartNanos = System.nanoTime();
+        val classWriter = config.isPreserveStackMapFrames()
+            ? new ClassWriter(classReader, 0)
+            : new ClassWriter(classReader, COMPUTE_MAXS | COMPUTE_FRAMES);
+        ClassVisitor classVisitor = classWriter;
+        if (IN_TEST) {
+            classVisitor = wrapWithTestClassVisitors(classVisitor);
+        }
+        classReader.accept(
+            new StreamingTransformer(classVisitor, classReader, classHeader),
+            config.isPreserveStackMapFrames() ? 0 : SKIP_FRAMES
+        );
+        metrics.addTimeSince(Timer.TRANSFORM, transformStartNanos);
+
+        if (!changed) {
+            metrics.classSkipped(ClassSkipReason.NO_METHODS_TO_INSTRUMENT);
+            return null;
+        }
+
+        metrics.increment(Counter.CLASSES_REWRITTEN);
+        val writeStartNanos = System.nanoTime();
+        try {
+            return classWriter.toByteArray();
+        } finally {
+            metrics.addTimeSince(Timer.WRITE, writeStartNanos);
+        }
+    }
+
+    private class StreamingTransformer extends ClassVisitor {
+
+        private final ClassReader classReader;
 
+        private final ClassNode classNode = new ClassNode();
 
-        if (changed) {
-            classNode.methods.forEach(methodNode -> {
-                methodNode.maxStack = 1;
-                methodNode.maxLocals = 1;
-            });
+        @Nullable
+        private MethodNode staticInitializer;
 
-            val classWriter = new ClassWriter(COMPUTE_MAXS | COMPUTE_FRAMES);
-            ClassVisitor classVisitor = classWriter;
-            if (IN_TEST) {
-                classVisitor = wrapWithTestClassVisitors(classVisitor);
+        @Nullable
+        private MethodVisitor staticInitializerVisitor;
+
+        StreamingTransformer(ClassVisitor classVisitor, ClassReader classReader, ClassHeader classHeader) {
+            super(ASM9, classVisitor);
+            this.classReader = classReader;
+
+            // stubs of all methods, so names of added methods don't clash with existing ones
+            classHeader.getMethods().forEach(method -> classNode.methods.add(
+                new MethodNode(method.getAccess(), method.getName(), method.getDesc(), null, null)
+            ));
+        }
+
+        @Override
+        public void visit(
+            int version,
+            int access,
+            String name,
+            @Nullable String signature,
+            @Nullable String superName,
+            @Nullable String[] interfaces
+        ) {
+            classNode.visit(version, access, name, signature, superName, interfaces);
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Nullable
+        @Override
+        public FieldVisitor visitField(
+            int access,
+            String name,
+            String descriptor,
+            @Nullable String signature,
+            @Nullable Object value
+        ) {
+            // fields are visited before methods, so the kill switch field gets a unique name
+            classNode.fields.add(new FieldNode(access, name, descriptor, null, null));
+            return super.visitField(access, name, descriptor, signature, value);
+        }
+
+        @Nullable
+        @Override
+        public MethodVisitor visitMethod(
+            int access,
+            String name,
+            String descriptor,
+            @Nullable String signature,
+            @Nullable String[] exceptions
+        ) {
+            val methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if (methodVisitor == null) {
+                return null;
             }
-            classNode.accept(classVisitor);
-            val bytecode = classWriter.toByteArray();
 
-            if (sourcePath != targetPath) {
-                val targetDirPath = targetPath.getParent();
-                if (targetDirPath != null) {
-                    createDirectories(targetDirPath);
+            val skipReason = getMethodSkipReason(access, descriptor);
+            if (skipReason != null) {
+                metrics.methodSkipped(skipReason);
+                if (name.equals("<clinit>") && config.getKillSwitchSystemPropertyName() != null) {
+                    // the kill switch is initialized here, if any null check is inserted
+                    return new MethodNode(ASM9, access, name, descriptor, signature, exceptions) {
+                        @Override
+                        public void visitEnd() {
+                            staticInitializer = this;
+                            staticInitializerVisitor = methodVisitor;
+                        }
+                    };
+                }
+                return methodVisitor;
+            }
+
+            return new MethodNode(ASM9, access, name, descriptor, signature, exceptions) {
+                @Override
+                public void visitEnd() {
+                    val paramIndexes = planNullChecks(classNode, this);
+                    if (paramIndexes != null) {
+                        insertNullChecks(classNode, this, paramIndexes);
+                    }
+                    accept(methodVisitor);
+                }
+            };
+        }
+
+        @Override
+        public void visitEnd() {
+            if (changed && killSwitch.isUsed()) {
+                killSwitch.createField(classNode).accept(cv);
+                val initialization = createKillSwitchInitialization(classNode);
+                if (staticInitializer != null) {
+                    insertKillSwitchInitialization(staticInitializer, initialization);
+                } else {
+                    addSerialVersionUidIfNeeded();
+                    createStaticInitializer(initialization).accept(cv);
                 }
             }
 
-            write(targetPath, bytecode);
+            if (staticInitializer != null) {
+                staticInitializer.accept(requireNonNull(staticInitializerVisitor));
+            }
+
+            if (changed && throwHelper.isUsed()) {
+                throwHelper.createMethod(isFramesInsertionNeeded(classNode)).accept(cv);
+            }
+
+            if (changed) {
+                super.visitAttribute(new ProcessedClassAttribute());
+            }
+
+            super.visitEnd();
         }
+
+        private void addSerialVersionUidIfNeeded() {
+            // stubs don't have all the members, so the class is read again without code
+            val skeletonNode = new ClassNode();
+            classReader.accept(skeletonNode, SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+            if (isDefaultSerialVersionUidUsed(skeletonNode)) {
+                createSerialVersionUidField(skeletonNode).accept(cv);
+            }
+        }
+
     }
 
+    private byte[] writeClass(ClassReader classReader, ClassNode classNode) {
+        if (config.isPreserveStackMapFrames()) {
+            return writeWithOriginalFrames(classReader);
+        }
 
-    private void processClass(ClassNode classNode) {
-        if ((classNode.access & ACC_MODULE) != 0) {
+        classNode.methods.forEach(methodNode -> {
+            methodNode.maxStack = 1;
+            methodNode.maxLocals = 1;
+        });
+
+        if (classNode.attrs == null) {
+            classNode.attrs = new ArrayList<>();
+        }
+        classNode.attrs.add(new ProcessedClassAttribute());
+
+        val classWriter = new ClassWriter(COMPUTE_MAXS | COMPUTE_FRAMES);
+        ClassVisitor classVisitor = classWriter;
+        if (IN_TEST) {
+            classVisitor = wrapWithTestClassVisitors(classVisitor);
+        }
+        classNode.accept(classVisitor);
+        return classWriter.toByteArray();
+    }
+
+    /**
+     * Reuses the constant pool of the original class and copies not processed methods as is.
+     * Stack map frames and max values are updated for processed methods only.
+     */
+    private byte[] writeWithOriginalFrames(ClassReader classReader) {
+        val classWriter = new ClassWriter(classReader, 0);
+        ClassVisitor classVisitor = classWriter;
+        if (IN_TEST) {
+            classVisitor = wrapWithTestClassVisitors(classVisitor);
+        }
+        classReader.accept(new ClassVisitor(ASM9, classVisitor) {
+            @Nullable
+            @Override
+            public MethodVisitor visitMethod(
+                int access,
+                String name,
+                String descriptor,
+                @Nullable String signature,
+                @Nullable String[] exceptions
+            ) {
+                val methodVisitor = super.visitMethod(access, name, descriptor, signature, exceptions);
+                val methodNode = processedMethods.get(name + descriptor);
+                if (methodNode == null || methodVisitor == null) {
+                    return methodVisitor;
+                }
+
+                methodNode.accept(methodVisitor);
+                return null;
+            }
+
+            @Override
+            public void visitEnd() {
+                addedFields.forEach(fieldNode -> fieldNode.accept(cv));
+                addedMethods.forEach(methodNode -> methodNode.accept(cv));
+                super.visitAttribute(new ProcessedClassAttribute());
+                super.visitEnd();
+            }
+        }, 0);
+        return classWriter.toByteArray();
+    }
+
+
+    /**
+     * Checks class-level conditions, that can be checked without building a full {@link ClassNode}.
+     *
+     * @param packageCategories a bit mask of annotation categories of the package, see {@link PackageInfoIndex}
+     * @return the reason to skip the class, or {@code null} if the class should be processed
+     */
+    @Nullable
+    @SuppressWarnings({"java:S3776", "java:S1541"})
+    private ClassSkipReason getClassSkipReason(ClassHeader classHeader, int packageCategories) {
+        if (classHeader.isProcessed()) {
+            // skip classes that have already been processed
+            return ClassSkipReason.ALREADY_PROCESSED;
+        }
+
+        if (!IN_TEST && classHeader.getInvisibleAnnotationDescs().contains(INSERT_NULL_CHECKS_IN_TESTS_ONLY_DESC)) {
+            // skip classes that are supposed to be processed in unit tests of this plugin only
+            return ClassSkipReason.IN_TESTS_ONLY;
+        }
+
+        if ((classHeader.getAccess() & ACC_MODULE) != 0) {
             // skip `module-info`
-            return;
+            return ClassSkipReason.MODULE_INFO;
         }
 
-        if (classNode.methods == null || classNode.methods.isEmpty()) {
+        if (classHeader.getMethodsCount() == 0) {
             // skip classes without methods
-            return;
+            return ClassSkipReason.NO_METHODS;
         }
 
-        if (classNode.outerMethod != null) {
+        if (classHeader.isDefinedInMethod()) {
             // skip classes defined in methods
-            return;
+            return ClassSkipReason.DEFINED_IN_METHOD;
         }
 
-        if (isKotlinClass(classNode) // skip Kotlin classes, as this language handles nullability itself
-            || isGroovyGeneratedClosureClass(classNode) // skip closures generated by the Groovy compiler
-        ) {
-            return;
+        if (isKotlinClass(classHeader)) {
+            // skip Kotlin classes, as this language handles nullability itself
+            return ClassSkipReason.KOTLIN_CLASS;
+        }
+
+        if (isGroovyGeneratedClosureClass(classHeader)) {
+            // skip closures generated by the Groovy compiler
+            return ClassSkipReason.GROOVY_CLOSURE;
         }
 
-        if (isAnnotatedBy(classNode, exclusionAnnotationDescs::contains)) {
+        if (isAnnotatedBy(classHeader, EXCLUSION)) {
             // skip classes annotated with exclusion annotation
-            return;
+            return ClassSkipReason.EXCLUSION_ANNOTATION;
+        }
+
+        if ((packageCategories & EXCLUSION) != 0) {
+            // skip classes of packages annotated with exclusion annotation
+            return ClassSkipReason.PACKAGE_EXCLUSION_ANNOTATION;
         }
 
-        if (!includeGeneratedCode) {
-            if (isAnnotatedByGeneratedAnnotations(classNode)) {
+        if (!config.isIncludeGeneratedCode()) {
+            if (isAnnotatedBy(classHeader, GENERATED)) {
                 // skip generated classes
-                return;
+                return ClassSkipReason.GENERATED_ANNOTATION;
             }
         }
 
-        if (isAnnotatedByValidationAnnotations(classNode)) {
+        if (isAnnotatedBy(classHeader, VALIDATION)) {
             // skip classes annotated with Bean Validation annotations (or alternatives)
-            return;
+            return ClassSkipReason.VALIDATION_ANNOTATION;
         }
 
-        // TODO: check validation annotations on parent classes
+        if ((packageCategories & VALIDATION) != 0) {
+            // skip classes of packages annotated with Bean Validation annotations (or alternatives)
+            return ClassSkipReason.PACKAGE_VALIDATION_ANNOTATION;
+        }
 
-        classNode.methods.forEach(methodNode ->
-            processMethod(classNode, methodNode)
-        );
+        if (config.isNonNullByDefaultCodeOnly()
+            && (packageCategories & NON_NULL_BY_DEFAULT) == 0
+            && !isAnnotatedBy(classHeader, NON_NULL_BY_DEFAULT)
+        ) {
+            // skip classes whose parameters are not non-null by default
+            return ClassSkipReason.NOT_NON_NULL_BY_DEFAULT;
+        }
+
+        if (classHierarchyIndex != null) {
+            val inheritedCategories = classHierarchyIndex.getInheritedClassCategories(
+                classHeader.getSuperName(),
+                classHeader.getInterfaces()
+            );
+            if ((inheritedCategories & VALIDATION) != 0) {
+                // skip classes whose parent classes are annotated with Bean Validation annotations (or alternatives)
+                return ClassSkipReason.INHERITED_VALIDATION_ANNOTATION;
+            }
+        }
+
+        return null;
     }
 
+    private void processClass(ClassNode classNode) {
+        Map<MethodNode, List<Integer>> plannedChecks = new LinkedHashMap<>();
+        classNode.methods.forEach(methodNode -> {
+            val paramIndexes = planNullChecks(classNode, methodNode);
+            if (paramIndexes != null) {
+                plannedChecks.put(methodNode, paramIndexes);
+            }
+        });
 
-    @SuppressWarnings("java:S3776")
-    private void processMethod(ClassNode classNode, MethodNode methodNode) {
-        if ((methodNode.access & ACC_ABSTRACT) != 0 // skip abstract methods
-            || (methodNode.access & ACC_SYNTHETIC) != 0 // skip synthetic methods
-            || methodNode.instructions == null // skip methods without instructions
-        ) {
-            return;
+        if (config.isIncludePrivateMethods() && config.isEliminateRedundantChecks()) {
+            elideChecksOfPrivateMethods(classNode, plannedChecks);
+        }
+
+        plannedChecks.forEach((methodNode, paramIndexes) -> {
+            insertNullChecks(classNode, methodNode, paramIndexes);
+            processedMethods.put(methodNode.name + methodNode.desc, methodNode);
+        });
+    }
+
+    private void elideChecksOfPrivateMethods(ClassNode classNode, Map<MethodNode, List<Integer>> plannedChecks) {
+        val nonNullParamIndexes = findNonNullParametersOfPrivateMethods(classNode, plannedChecks);
+        nonNullParamIndexes.forEach((methodNode, paramIndexes) -> {
+            val plannedParamIndexes = plannedChecks.get(methodNode);
+            val plannedCount = plannedParamIndexes.size();
+            plannedParamIndexes.removeAll(paramIndexes);
+            metrics.add(Counter.NULL_CHECKS_ELIDED, plannedCount - plannedParamIndexes.size());
+            if (plannedParamIndexes.isEmpty()) {
+                // skip private methods that are invoked with non-null arguments only
+                metrics.methodSkipped(MethodSkipReason.ALL_PARAMETERS_CHECKED);
+                plannedChecks.remove(methodNode);
+            }
+        });
+    }
+
+
+    /**
+     * Checks method-level conditions, that can be checked without reading the method's code and annotations.
+     *
+     * @return the reason to skip the method, or {@code null} if the method can be processed
+     */
+    @Nullable
+    private MethodSkipReason getMethodSkipReason(int access, String desc) {
+        if ((access & ACC_ABSTRACT) != 0) {
+            // skip abstract methods
+            return MethodSkipReason.ABSTRACT;
         }
 
-        if (!includePrivateMethods) {
-            if ((methodNode.access & ACC_PRIVATE) != 0) {
+        if ((access & ACC_SYNTHETIC) != 0) {
+            // skip synthetic methods
+            return MethodSkipReason.SYNTHETIC;
+        }
+
+        if ((access & ACC_NATIVE) != 0) {
+            // skip native methods, as they don't have instructions
+            return MethodSkipReason.NO_INSTRUCTIONS;
+        }
+
+        if (!config.isIncludePrivateMethods()) {
+            if ((access & ACC_PRIVATE) != 0) {
                 // skip private methods
-                return;
+                return MethodSkipReason.PRIVATE;
             }
         }
 
-        val paramTypes = getArgumentTypes(methodNode.desc);
-        if (paramTypes.length == 0) {
+        if (desc.startsWith("()")) {
             // skip methods without parameters
-            return;
+            return MethodSkipReason.NO_PARAMETERS;
+        }
+
+        return null;
+    }
+
+    /**
+     * Checks method-level conditions.
+     *
+     * @return indexes of parameters to check, or {@code null} if the method should be skipped
+     */
+    @Nullable
+    @SuppressWarnings("java:S3776")
+    private List<Integer> planNullChecks(ClassNode classNode, MethodNode methodNode) {
+        val skipReason = getMethodSkipReason(methodNode.access, methodNode.desc);
+        if (skipReason != null) {
+            metrics.methodSkipped(skipReason);
+            return null;
         }
 
+        if (methodNode.instructions == null || methodNode.instructions.size() == 0) {
+            // skip methods without instructions
+            metrics.methodSkipped(MethodSkipReason.NO_INSTRUCTIONS);
+            return null;
+        }
+
+        val paramTypes = getArgumentTypes(methodNode.desc);
+
         List<Integer> candidateNonNullParamIndexes = new ArrayList<>(paramTypes.length);
         for (int paramIndex = 0; paramIndex < paramTypes.length; ++paramIndex) {
             val paramType = paramTypes[paramIndex];
             if (isPrimitive(paramType)
                 || !isExplicitParameter(methodNode, paramIndex)
-                || isAnnotatedBy(methodNode, paramIndex, desc -> isDescEndsWith(desc, nullableAnnotationDescs))
+                || isAnnotatedBy(methodNode, paramIndex, NULLABLE)
             ) {
                 continue;
             }
+            candidateNonNullParamIndexes.add(paramIndex);
         }
         if (candidateNonNullParamIndexes.isEmpty()) {
             // skip methods if all parameters can't be non-null
-            return;
+            metrics.methodSkipped(MethodSkipReason.NO_NON_NULL_PARAMETERS);
+            return null;
         }
 
         if (methodNode.name.equals("equals")
             && methodNode.desc.equals("(Ljava/lang/Object;)Z")
         ) {
             // skip `equals` methods
-            return;
+            metrics.methodSkipped(MethodSkipReason.EQUALS);
+            return null;
         }
 
         if ((classNode.access & ACC_ENUM) != 0
@@ -240,136 +736,333 @@ class ClassFileProcessor extends ClassFileProcessorParams {
             && methodNode.desc.equals("(Ljava/lang/String;)L" + classNode.name + ";")
         ) {
             // skip `valueOf` methods of enums
-            return;
+            metrics.methodSkipped(MethodSkipReason.ENUM_VALUE_OF);
+            return null;
         }
 
-        if (isAnnotatedBy(methodNode, exclusionAnnotationDescs::contains)) {
+        if (isAnnotatedBy(methodNode, EXCLUSION)) {
             // skip methods annotated with exclusion annotation
-            return;
+            metrics.methodSkipped(MethodSkipReason.EXCLUSION_ANNOTATION);
+            return null;
         }
 
-        if (!includeGeneratedCode) {
-            if (isAnnotatedByGeneratedAnnotations(methodNode)) {
+        if (!config.isIncludeGeneratedCode()) {
+            if (isAnnotatedBy(methodNode, GENERATED)) {
                 // skip generated methods
-                return;
+                metrics.methodSkipped(MethodSkipReason.GENERATED_ANNOTATION);
+                return null;
             }
         }
 
-        if (isAnnotatedByValidationAnnotations(methodNode)) {
+        if (isAnnotatedBy(methodNode, VALIDATION)) {
             // skip methods annotated with Bean Validation annotations (or alternatives)
-            return;
+            metrics.methodSkipped(MethodSkipReason.VALIDATION_ANNOTATION);
+            return null;
         }
 
-        // TODO: check validation annotations on methods from parent classes
+        if (classHierarchyIndex != null
+            && (methodNode.access & ACC_STATIC) == 0
+            && !methodNode.name.startsWith("<")
+        ) {
+            val inheritedCategories = classHierarchyIndex.getInheritedMethodCategories(
+                classNode.superName,
+                classNode.interfaces != null ? classNode.interfaces : emptyList(),
+                methodNode.name + methodNode.desc
+            );
+            if ((inheritedCategories & VALIDATION) != 0) {
+                // skip methods that override methods annotated with Bean Validation annotations (or alternatives)
+                metrics.methodSkipped(MethodSkipReason.INHERITED_VALIDATION_ANNOTATION);
+                return null;
+            }
+        }
 
         if (invokesSuperMethodOnly(methodNode)) {
             // skip methods that invoke super method only
-            return;
+            metrics.methodSkipped(MethodSkipReason.INVOKES_SUPER_METHOD_ONLY);
+            return null;
         }
 
-        throw new UnsupportedOperationException();
-    }
-
+        if (config.isEliminateRedundantChecks()) {
+            val checkedParamIndexes = findNullCheckedParameters(methodNode, config.getKillSwitchSystemPropertyName());
+            val candidatesCount = candidateNonNullParamIndexes.size();
+            candidateNonNullParamIndexes.removeIf(checkedParamIndexes::contains);
+            metrics.add(Counter.NULL_CHECKS_ELIDED, candidatesCount - candidateNonNullParamIndexes.size());
+            if (candidateNonNullParamIndexes.isEmpty()) {
+                // skip methods that check or dereference all parameters themselves
+                metrics.methodSkipped(MethodSkipReason.ALL_PARAMETERS_CHECKED);
+                return null;
+            }
+        }
 
-    private static boolean isKotlinClass(ClassNode classNode) {
-        if (isAnnotatedBy(classNode, "Lkotlin/Metadata;"::equals)) {
-            // Kotlin classes are annotated with `kotlin.Metadata`
-            return true;
+        if (config.getInliningThreshold() > 0 && config.isSkipMethodsExceedingInliningThreshold()) {
+            val sizeBefore = estimateCodeSize(methodNode.instructions);
+            val sizeAfter = sizeBefore + estimateCodeSize(
+                createNullChecks(classNode, methodNode, candidateNonNullParamIndexes)
+            );
+            if (exceedsInliningThreshold(sizeBefore, sizeAfter)) {
+                // skip methods that can be inlined by JIT compiler, but can't be inlined with null checks
+                metrics.methodSkipped(MethodSkipReason.EXCEEDS_INLINING_THRESHOLD);
+                return null;
+            }
         }
 
-        if (isAnnotatedBy(classNode, desc -> desc.endsWith("/kotlin/Metadata;"))) {
-            // handle relocated Kotlin classes
-            return true;
+        return candidateNonNullParamIndexes;
+    }
+
+    private void insertNullChecks(ClassNode classNode, MethodNode methodNode, List<Integer> paramIndexes) {
+        val nullChecks = createNullChecks(classNode, methodNode, paramIndexes);
+        val sizeBefore = estimateCodeSize(methodNode.instructions);
+        val sizeAfter = sizeBefore + estimateCodeSize(nullChecks);
+        methodNode.instructions.insert(nullChecks);
+        methodNode.maxStack = max(methodNode.maxStack, NULL_CHECK_MAX_STACK);
+        changed = true;
+        metrics.increment(Counter.METHODS_INSTRUMENTED);
+        metrics.add(Counter.NULL_CHECKS_INSERTED, paramIndexes.size());
+        if (exceedsInliningThreshold(sizeBefore, sizeAfter)) {
+            metrics.methodExceededInliningThreshold(new MethodSizeChange(
+                classNode.name,
+                methodNode.name,
+                methodNode.desc,
+                sizeBefore,
+                sizeAfter
+            ));
         }
+    }
 
-        return false;
+    private boolean exceedsInliningThreshold(int sizeBefore, int sizeAfter) {
+        val inliningThreshold = config.getInliningThreshold();
+        return inliningThreshold > 0
+            && sizeBefore <= inliningThreshold
+            && sizeAfter > inliningThreshold;
     }
 
-    private static boolean isGroovyGeneratedClosureClass(ClassNode classNode) {
-        if (classNode.interfaces == null || classNode.interfaces.isEmpty()) {
-            return false;
+    private void addKillSwitch(ClassNode classNode) {
+        val killSwitchField = killSwitch.createField(classNode);
+        classNode.fields.add(killSwitchField);
+        addedFields.add(killSwitchField);
+
+        val initialization = createKillSwitchInitialization(classNode);
+        val staticInitializer = classNode.methods.stream()
+            .filter(methodNode -> methodNode.name.equals("<clinit>") && methodNode.desc.equals("()V"))
+            .findFirst()
+            .orElse(null);
+        if (staticInitializer != null) {
+            insertKillSwitchInitialization(staticInitializer, initialization);
+            processedMethods.put(staticInitializer.name + staticInitializer.desc, staticInitializer);
+        } else {
+            if (isDefaultSerialVersionUidUsed(classNode)) {
+                // the default value depends on presence of the static initializer
+                val serialVersionUidField = createSerialVersionUidField(classNode);
+                classNode.fields.add(serialVersionUidField);
+                addedFields.add(serialVersionUidField);
+            }
+            val newStaticInitializer = createStaticInitializer(initialization);
+            classNode.methods.add(newStaticInitializer);
+            addedMethods.add(newStaticInitializer);
         }
+    }
 
-        return classNode.interfaces.stream()
-            .anyMatch("org/codehaus/groovy/runtime/GeneratedClosure"::equals);
+    private InsnList createKillSwitchInitialization(ClassNode classNode) {
+        return killSwitch.createInitialization(
+            classNode,
+            requireNonNull(config.getKillSwitchSystemPropertyName())
+        );
+    }
+
+    private static void insertKillSwitchInitialization(MethodNode staticInitializer, InsnList initialization) {
+        // no branches are inserted, so stack map frames stay valid
+        staticInitializer.instructions.insert(initialization);
+        staticInitializer.maxStack = max(staticInitializer.maxStack, 1);
     }
 
+    private static MethodNode createStaticInitializer(InsnList initialization) {
+        val staticInitializer = new MethodNode(ACC_STATIC, "<clinit>", "()V", null, null);
+        staticInitializer.instructions.add(initialization);
+        staticInitializer.instructions.add(new InsnNode(RETURN));
+        staticInitializer.maxStack = 1;
+        staticInitializer.maxLocals = 0;
+        return staticInitializer;
+    }
+
+
+    private InsnList createNullChecks(ClassNode classNode, MethodNode methodNode, List<Integer> paramIndexes) {
+        val startsWithFrame = getNextMeaningfulNode(methodNode.instructions, true) instanceof FrameNode;
+        val killSwitchSystemPropertyName = config.getKillSwitchSystemPropertyName();
+
+        val strategy = getNullCheckStrategy(classNode);
+        val checks = strategy == NullCheckStrategy.REQUIRE_NON_NULL
+            ? createRequireNonNullChecks(methodNode, paramIndexes)
+            : createThrowingChecks(
+                classNode,
+                methodNode,
+                paramIndexes,
+                strategy == NullCheckStrategy.THROW_HELPER,
+                // the label after the kill switch guard gets the frame instead
+                startsWithFrame || killSwitchSystemPropertyName != null
+            );
+
+        if (killSwitchSystemPropertyName != null) {
+            val afterChecksLabel = new LabelNode();
+            checks.insert(new JumpInsnNode(IFNE, afterChecksLabel));
+            checks.insert(killSwitch.createGuard(classNode, killSwitchSystemPropertyName));
+            checks.add(afterChecksLabel);
+            if (isFramesInsertionNeeded(classNode) && !startsWithFrame) {
+                // locals and stack are the same as at the beginning of the method
+                checks.add(new FrameNode(F_SAME, 0, null, 0, null));
+            }
+        }
 
-    private static String classNameToInternalName(String className) {
-        return className.replace('.', '/');
+        return checks;
     }
 
-    private static String classNameToDescription(String className) {
-        return 'L' + classNameToInternalName(className) + ';';
+    private NullCheckStrategy getNullCheckStrategy(ClassNode classNode) {
+        val strategy = config.getNullCheckStrategy();
+        val majorVersion = classNode.version & 0xFFFF;
+        if (strategy == NullCheckStrategy.REQUIRE_NON_NULL && majorVersion < V1_7) {
+            // `java.util.Objects` is available since Java 7
+            return NullCheckStrategy.INLINE_THROW;
+        }
+
+        if (strategy == NullCheckStrategy.THROW_HELPER
+            && (classNode.access & ACC_INTERFACE) != 0
+            && majorVersion < V9
+        ) {
+            // private interface methods are supported since Java 9
+            return NullCheckStrategy.INLINE_THROW;
+        }
+
+        return strategy;
     }
 
-    private static boolean isPrimitive(Type type) {
-        return type.getDescriptor().length() == 1;
+    private static InsnList createRequireNonNullChecks(MethodNode methodNode, List<Integer> paramIndexes) {
+        // no branches are created, so stack map frames don't have to be inserted
+        val insns = new InsnList();
+        for (val paramIndex : paramIndexes) {
+            insns.add(new VarInsnNode(ALOAD, getParameterVarIndex(methodNode, paramIndex)));
+            insns.add(new LdcInsnNode(getNullCheckMessage(methodNode, paramIndex)));
+            insns.add(new MethodInsnNode(
+                INVOKESTATIC,
+                OBJECTS_INTERNAL_NAME,
+                "requireNonNull",
+                "(Ljava/lang/Object;Ljava/lang/String;)Ljava/lang/Object;"
+            ));
+            insns.add(new InsnNode(POP));
+        }
+        return insns;
     }
 
+    private InsnList createThrowingChecks(
+        ClassNode classNode,
+        MethodNode methodNode,
+        List<Integer> paramIndexes,
+        boolean useThrowHelper,
+        boolean omitLastFrame
+    ) {
+        val isFramesInsertionNeeded = isFramesInsertionNeeded(classNode);
+
+        val insns = new InsnList();
+        for (int i = 0; i < paramIndexes.size(); ++i) {
+            val paramIndex = paramIndexes.get(i);
+            val afterCheckLabel = new LabelNode();
+            insns.add(new VarInsnNode(ALOAD, getParameterVarIndex(methodNode, paramIndex)));
+            insns.add(new JumpInsnNode(IFNONNULL, afterCheckLabel));
+            if (useThrowHelper) {
+                val paramNameId = throwHelper.getParamNameId(getParameterName(methodNode, paramIndex));
+                insns.add(createPushIntInsn(paramNameId));
+                insns.add(new MethodInsnNode(
+                    INVOKESTATIC,
+                    classNode.name,
+                    throwHelper.getMethodName(classNode),
+                    THROW_HELPER_DESC,
+                    (classNode.access & ACC_INTERFACE) != 0
+                ));
+            } else {
+                insns.add(new TypeInsnNode(NEW, NPE_INTERNAL_NAME));
+                insns.add(new InsnNode(DUP));
+                insns.add(new LdcInsnNode(getNullCheckMessage(methodNode, paramIndex)));
+                insns.add(new MethodInsnNode(INVOKESPECIAL, NPE_INTERNAL_NAME, "<init>", "(Ljava/lang/String;)V"));
+            }
+            insns.add(new InsnNode(ATHROW));
+            insns.add(afterCheckLabel);
 
-    private boolean isAnnotatedByGeneratedAnnotations(ClassNode classNode) {
-        return isAnnotatedBy(classNode, desc -> desc.endsWith(GENERATED_DESC_SUFFIX));
+            val isLastCheck = i == paramIndexes.size() - 1;
+            if (isFramesInsertionNeeded && !(isLastCheck && omitLastFrame)) {
+                // locals and stack are the same as at the beginning of the method
+                insns.add(new FrameNode(F_SAME, 0, null, 0, null));
+            }
+        }
+        return insns;
     }
 
-    private boolean isAnnotatedByGeneratedAnnotations(MethodNode methodNode) {
-        return isAnnotatedBy(methodNode, desc -> desc.endsWith(GENERATED_DESC_SUFFIX));
+    private boolean isFramesInsertionNeeded(ClassNode classNode) {
+        return config.isPreserveStackMapFrames()
+            && (classNode.version & 0xFFFF) >= V1_6;
     }
 
-    private boolean isAnnotatedByValidationAnnotations(ClassNode classNode) {
-        return isAnnotatedBy(classNode, validationAnnotationDescs::contains)
-            || isAnnotatedBy(classNode, desc -> validationAnnotationDescPrefixes.stream().anyMatch(desc::startsWith));
+    private static AbstractInsnNode createPushIntInsn(int value) {
+        if (value <= 5) {
+            return new InsnNode(ICONST_0 + value);
+        } else if (value <= Byte.MAX_VALUE) {
+            return new IntInsnNode(BIPUSH, value);
+        } else if (value <= Short.MAX_VALUE) {
+            return new IntInsnNode(SIPUSH, value);
+        } else {
+            return new LdcInsnNode(value);
+        }
     }
 
-    private boolean isAnnotatedByValidationAnnotations(MethodNode methodNode) {
-        return isAnnotatedBy(methodNode, validationAnnotationDescs::contains)
-            || isAnnotatedBy(methodNode, desc -> isDescStartsWith(desc, validationAnnotationDescPrefixes));
+    private static String getNullCheckMessage(MethodNode methodNode, int paramIndex) {
+        return getParameterName(methodNode, paramIndex) + " must not be null";
     }
 
-    private boolean isDescStartsWith(String descriptor, Collection<String> prefixes) {
-        return prefixes.stream().anyMatch(descriptor::startsWith);
+
+    private boolean isKotlinClass(ClassHeader classHeader) {
+        // Kotlin classes are annotated with `kotlin.Metadata` (or with a relocated one)
+        return isAnnotatedBy(classHeader, KOTLIN_METADATA);
     }
 
-    private boolean isDescEndsWith(String descriptor, Collection<String> suffixes) {
-        return suffixes.stream().anyMatch(descriptor::endsWith);
+    private static boolean isGroovyGeneratedClosureClass(ClassHeader classHeader) {
+        return classHeader.getInterfaces().stream()
+            .anyMatch("org/codehaus/groovy/runtime/GeneratedClosure"::equals);
     }
 
 
-    private static boolean isAnnotatedBy(
-        ClassNode classNode,
-        Predicate<String> descPredicate
-    ) {
-        return isAnnotatedBy(classNode.visibleAnnotations, descPredicate)
-            || isAnnotatedBy(classNode.invisibleAnnotations, descPredicate);
+    private static boolean isPrimitive(Type type) {
+        return type.getDescriptor().length() == 1;
     }
 
-    private static boolean isAnnotatedBy(
-        MethodNode methodNode,
-        Predicate<String> descPredicate
-    ) {
-        return isAnnotatedBy(methodNode.visibleAnnotations, descPredicate)
-            || isAnnotatedBy(methodNode.invisibleAnnotations, descPredicate);
+
+    private boolean isAnnotatedBy(ClassHeader classHeader, int annotationCategories) {
+        val descs = classHeader.getAnnotationDescs();
+        for (int i = 0; i < descs.size(); ++i) {
+            if (config.getAnnotationDescMatcher().matches(descs.get(i), annotationCategories)) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private static boolean isAnnotatedBy(
-        MethodNode methodNode,
-        int paramIndex,
-        Predicate<String> descPredicate
-    ) {
-        return isAnnotatedBy(getParameterVisibleAnnotations(methodNode, paramIndex), descPredicate)
-            || isAnnotatedBy(getParameterInvisibleAnnotations(methodNode, paramIndex), descPredicate);
+    private boolean isAnnotatedBy(MethodNode methodNode, int annotationCategories) {
+        return isAnnotatedBy(methodNode.visibleAnnotations, annotationCategories)
+            || isAnnotatedBy(methodNode.invisibleAnnotations, annotationCategories);
     }
 
-    private static boolean isAnnotatedBy(
-        @Nullable List<AnnotationNode> annotations,
-        Predicate<String> descPredicate
-    ) {
-        if (annotations == null || annotations.isEmpty()) {
+    private boolean isAnnotatedBy(MethodNode methodNode, int paramIndex, int annotationCategories) {
+        return isAnnotatedBy(getParameterVisibleAnnotations(methodNode, paramIndex), annotationCategories)
+            || isAnnotatedBy(getParameterInvisibleAnnotations(methodNode, paramIndex), annotationCategories);
+    }
+
+    private boolean isAnnotatedBy(@Nullable List<AnnotationNode> annotations, int annotationCategories) {
+        if (annotations == null) {
             return false;
         }
 
-        return annotations.stream()
-            .anyMatch(it -> descPredicate.test(it.desc));
+        for (int i = 0; i < annotations.size(); ++i) {
+            if (config.getAnnotationDescMatcher().matches(annotations.get(i).desc, annotationCategories)) {
+                return true;
+            }
+        }
+        return false;
     }
 
 
@@ -386,13 +1079,13 @@ class ClassFileProcessor extends ClassFileProcessorParams {
         }
 
         if (methodNode.localVariables != null) {
-            val localVarIndex = (methodNode.access & ACC_STATIC) != 0
-                ? paramIndex
-                : paramIndex + 1;
-            if (localVarIndex < methodNode.localVariables.size()) {
-                val name = methodNode.localVariables.get(localVarIndex).name;
-                if (name != null && !name.isEmpty()) {
-                    return name;
+            val varIndex = getParameterVarIndex(methodNode, paramIndex);
+            for (val localVariable : methodNode.localVariables) {
+                if (localVariable.index == varIndex) {
+                    val name = localVariable.name;
+                    if (name != null && !name.isEmpty()) {
+                        return name;
+                    }
                 }
             }
         }
@@ -400,6 +1093,16 @@ class ClassFileProcessor extends ClassFileProcessorParams {
         return "arg" + (paramIndex + 1);
     }
 
+    @VisibleForTesting
+    static int getParameterVarIndex(MethodNode methodNode, int paramIndex) {
+        int varIndex = (methodNode.access & ACC_STATIC) != 0 ? 0 : 1;
+        val paramTypes = getArgumentTypes(methodNode.desc);
+        for (int i = 0; i < paramIndex; ++i) {
+            varIndex += paramTypes[i].getSize();
+        }
+        return varIndex;
+    }
+
     @VisibleForTesting
     static boolean isExplicitParameter(MethodNode methodNode, int paramIndex) {
         if (methodNode.parameters != null) {
@@ -2,26 +2,84 @@ package name.remal.gradle_plugins.insert_null_checks;
 
 import static java.lang.Boolean.FALSE;
 import static java.lang.Boolean.TRUE;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.readAllBytes;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.CONTRACT_INDEX_PATH;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.readContractIndex;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.writeIfChanged;
+import static name.remal.gradle_plugins.insert_null_checks.ParallelProcessingUtils.forEachInParallel;
+import static name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.ClassFileState.readClassFileState;
+import static name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.readManifest;
+import static name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.writeManifest;
 import static name.remal.gradle_plugins.toolkit.AbstractCompileUtils.getDestinationDir;
 import static name.remal.gradle_plugins.toolkit.SourceSetUtils.isCompiledBy;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 import javax.inject.Inject;
 import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
 import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.ClassFileState;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Counter;
 import org.gradle.api.Action;
 import org.gradle.api.Task;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
 import org.gradle.api.model.ObjectFactory;
 import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.compile.AbstractCompile;
+import org.gradle.api.tasks.compile.JavaCompile;
 
+/**
+ * Inserts null checks into class files of a compile task, right after compilation.
+ *
+ * <p>A single instance is shared by all compile tasks of the project, that can be executed in parallel,
+ * so it must not keep any state of a task execution. Every class file gets its own {@link ClassFileProcessor}.
+ */
 @RequiredArgsConstructor
 abstract class ClassFileProcessorAction implements Action<Task>, InsertNullChecksProperties {
 
+    private static final String MANIFEST_FILE_NAME = "insert-null-checks-processed-class-files.txt";
+
+    private static final String CLASS_FILE_EXTENSION = ".class";
+
     public abstract ListProperty<SourceSet> getTestSourceSets();
 
+    public abstract Property<InsertNullChecksBuildService> getBuildService();
+
+    /**
+     * A JSON report with processing metrics is written into this directory for every compile task.
+     */
+    public abstract DirectoryProperty getReportsDirectory();
+
     @Override
+    @SneakyThrows
     public void execute(Task untypedTask) {
+        // the report is an output of the task, so a report of a previous execution must not be left
+        val reportPath = getReportPath(untypedTask);
+        deleteIfExists(reportPath);
+
+        if (TRUE.equals(getUseDedicatedTasks().get())) {
+            // class files are processed by `InsertNullChecks` tasks
+            return;
+        }
+
+        if (TRUE.equals(getUseJavacPlugin().get()) && untypedTask instanceof JavaCompile) {
+            // class files are processed by `InsertNullChecksJavacPlugin`
+            return;
+        }
+
         val task = (AbstractCompile) untypedTask;
         val destinationDir = getDestinationDir(task);
         if (destinationDir == null) {
@@ -36,25 +94,121 @@ abstract class ClassFileProcessorAction implements Action<Task>, InsertNullCheck
             }
         }
 
+        val metrics = new ProcessingMetrics();
+        val buildService = getBuildService().get();
+        val config = buildService.getConfig(this);
+
+        val manifestPath = task.getTemporaryDir().toPath().resolve(MANIFEST_FILE_NAME);
+        val configFingerprint = config.getFingerprint();
+        val processedStates = readManifest(manifestPath, configFingerprint);
+
+        Map<String, ClassFileState> states = new LinkedHashMap<>();
+        Map<String, Path> classFilePathsToProcess = new LinkedHashMap<>();
         val fileTree = getObjects().fileTree().from(destinationDir);
         fileTree.include("**/*.class");
         fileTree.visit(details -> {
             if (!details.isDirectory()) {
-                val path = details.getFile().toPath();
+                val relativePath = details.getRelativePath().getPathString();
+                val state = new ClassFileState(details.getSize(), details.getLastModified());
+                states.put(relativePath, state);
+                if (!state.equals(processedStates.get(relativePath))) {
+                    // the class file was written by the compiler after the last processing
+                    classFilePathsToProcess.put(relativePath, details.getFile().toPath());
+                }
+            }
+        });
+
+        List<Path> classFilePaths = new ArrayList<>(classFilePathsToProcess.values());
+        val classHierarchyIndex = config.isCheckInheritedValidationAnnotations() && !classFilePaths.isEmpty()
+            ? buildService.createClassHierarchyIndex(
+                config,
+                concat(Stream.of(destinationDir), task.getClasspath().getFiles().stream()).collect(toList())
+            )
+            : null;
+        val packageInfoIndex = !classFilePaths.isEmpty()
+            ? buildService.createPackageInfoIndex(config, singletonList(destinationDir))
+            : null;
+        val outputCache = buildService.getOutputCache(this);
+        val processingBudget = buildService.getProcessingBudget();
+        val contractIndex = TRUE.equals(getWriteContractIndex().get())
+            ? readUpToDateContractIndex(destinationDir.toPath(), states, classFilePathsToProcess, config)
+            : null;
+        forEachInParallel(classFilePaths, getParallelism().get(), path ->
+            processingBudget.run(path.toFile().length(), metrics, () ->
                 ClassFileProcessor.builder()
                     .sourcePath(path)
                     .targetPath(path)
-                    .includeGeneratedCode(TRUE.equals(getIncludeGeneratedCode().get()))
-                    .includePrivateMethods(TRUE.equals(getIncludePrivateMethods().get()))
-                    .exclusionAnnotationClassNames(getNonNullAnnotationClassNames().get())
-                    .validationAnnotationClassNames(getValidationAnnotationClassNames().get())
-                    .validationAnnotationBasePackages(getValidationAnnotationBasePackages().get())
-                    .nonNullAnnotationClassNames(getNonNullAnnotationClassNames().get())
-                    .nullableAnnotationSimpleClassNames(getNullableAnnotationSimpleClassNames().get())
+                    .config(config)
+                    .classHierarchyIndex(classHierarchyIndex)
+                    .packageInfoIndex(packageInfoIndex)
+                    .outputCache(outputCache)
+                    .contractIndex(contractIndex)
+                    .metrics(metrics)
                     .build()
-                    .process();
+                    .process()
+            )
+        );
+
+        classFilePathsToProcess.forEach((relativePath, path) ->
+            states.put(relativePath, readClassFileState(path))
+        );
+        writeManifest(manifestPath, configFingerprint, states);
+
+        if (contractIndex != null) {
+            writeIfChanged(destinationDir.toPath().resolve(CONTRACT_INDEX_PATH), contractIndex.toBytes());
+        }
+
+        metrics.add(Counter.FILES_SCANNED, states.size());
+        metrics.add(Counter.FILES_UP_TO_DATE, states.size() - classFilePaths.size());
+        metrics.writeJsonReport(reportPath, task.getPath());
+        task.getLogger().info("Inserting null checks: {}", metrics.toSummary());
+        metrics.getInliningThresholdMessages().forEach(task.getLogger()::info);
+        val inliningThresholdWarning = metrics.getInliningThresholdWarning(reportPath);
+        if (inliningThresholdWarning != null) {
+            task.getLogger().warn(inliningThresholdWarning);
+        }
+        metrics.getWarnings().forEach(task.getLogger()::warn);
+    }
+
+    /**
+     * The report is registered as an output of the compile task, so it's restored from the build cache.
+     */
+    public Provider<RegularFile> getReportFile(Task task) {
+        return getReportsDirectory().file(task.getName() + ".json");
+    }
+
+    private Path getReportPath(Task task) {
+        return getReportFile(task).get().getAsFile().toPath();
+    }
+
+    /**
+     * Reads the index written by the previous execution, and removes classes that don't exist anymore.
+     * Contracts of class files that won't be processed, but are missing in the index, are added.
+     */
+    @SneakyThrows
+    private static ContractIndex readUpToDateContractIndex(
+        Path destinationDirPath,
+        Map<String, ClassFileState> states,
+        Map<String, Path> classFilePathsToProcess,
+        ClassFileProcessorConfig config
+    ) {
+        val contractIndex = readContractIndex(destinationDirPath.resolve(CONTRACT_INDEX_PATH));
+        contractIndex.retainClasses(internalName -> states.containsKey(internalName + CLASS_FILE_EXTENSION));
+        for (val relativePath : states.keySet()) {
+            if (classFilePathsToProcess.containsKey(relativePath)) {
+                continue;
             }
-        });
+
+            val internalName = relativePath.substring(0, relativePath.length() - CLASS_FILE_EXTENSION.length());
+            if (!contractIndex.containsClass(internalName)) {
+                // the index has been enabled after the class file was processed
+                contractIndex.addClass(
+                    readAllBytes(destinationDirPath.resolve(relativePath)),
+                    config.getKillSwitchSystemPropertyName()
+                );
+            }
+        }
+        return contractIndex;
     }
 
 
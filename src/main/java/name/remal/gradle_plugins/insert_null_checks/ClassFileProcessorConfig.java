@@ -0,0 +1,144 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Boolean.TRUE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Immutable and thread-safe configuration of {@link ClassFileProcessor}.
+ *
+ * <p>It's supposed to be created once per task execution and shared by processors of all class files.
+ */
+@Value
+@Builder
+class ClassFileProcessorConfig {
+
+    public static ClassFileProcessorConfig createClassFileProcessorConfig(InsertNullChecksProperties properties) {
+        return builder()
+            .includeGeneratedCode(TRUE.equals(properties.getIncludeGeneratedCode().get()))
+            .includePrivateMethods(TRUE.equals(properties.getIncludePrivateMethods().get()))
+            .preserveStackMapFrames(TRUE.equals(properties.getPreserveStackMapFrames().get()))
+            .checkInheritedValidationAnnotations(TRUE.equals(
+                properties.getCheckInheritedValidationAnnotations().get()
+            ))
+            .nullCheckStrategy(properties.getNullCheckStrategy().get())
+            .inliningThreshold(properties.getInliningThreshold().get())
+            .skipMethodsExceedingInliningThreshold(TRUE.equals(
+                properties.getSkipMethodsExceedingInliningThreshold().get()
+            ))
+            .killSwitchSystemPropertyName(properties.getKillSwitchSystemPropertyName().getOrNull())
+            .eliminateRedundantChecks(TRUE.equals(properties.getEliminateRedundantChecks().get()))
+            .nonNullByDefaultCodeOnly(TRUE.equals(properties.getNonNullByDefaultCodeOnly().get()))
+            .annotationDescMatcher(newAnnotationDescMatcher(
+                properties.getExclusionAnnotationClassNames().get(),
+                properties.getValidationAnnotationClassNames().get(),
+                properties.getValidationAnnotationBasePackages().get(),
+                properties.getNonNullAnnotationClassNames().get(),
+                properties.getNonNullByDefaultAnnotationClassNames().get(),
+                properties.getNullableAnnotationSimpleClassNames().get()
+            ))
+            .fingerprint(calculateConfigFingerprint(properties))
+            .build();
+    }
+
+    /**
+     * Calculates {@link #getFingerprint()} without compiling {@link AnnotationDescMatcher}.
+     */
+    public static String calculateConfigFingerprint(InsertNullChecksProperties properties) {
+        return calculateFingerprint(asList(
+            TRUE.equals(properties.getIncludeGeneratedCode().get()),
+            TRUE.equals(properties.getIncludePrivateMethods().get()),
+            TRUE.equals(properties.getPreserveStackMapFrames().get()),
+            TRUE.equals(properties.getCheckInheritedValidationAnnotations().get()),
+            properties.getNullCheckStrategy().get(),
+            properties.getInliningThreshold().get(),
+            TRUE.equals(properties.getSkipMethodsExceedingInliningThreshold().get()),
+            properties.getKillSwitchSystemPropertyName().getOrNull(),
+            TRUE.equals(properties.getEliminateRedundantChecks().get()),
+            TRUE.equals(properties.getNonNullByDefaultCodeOnly().get()),
+            properties.getExclusionAnnotationClassNames().get(),
+            properties.getValidationAnnotationClassNames().get(),
+            properties.getValidationAnnotationBasePackages().get(),
+            properties.getNonNullAnnotationClassNames().get(),
+            properties.getNonNullByDefaultAnnotationClassNames().get(),
+            properties.getNullableAnnotationSimpleClassNames().get()
+        ));
+    }
+
+    @SneakyThrows
+    @SuppressWarnings("unchecked")
+    private static String calculateFingerprint(List<?> configValues) {
+        val digest = MessageDigest.getInstance("SHA-256");
+        for (Object value : configValues) {
+            if (value instanceof Collection) {
+                value = new TreeSet<>((Collection<String>) value);
+            }
+            digest.update(String.valueOf(value).getBytes(UTF_8));
+            digest.update((byte) 0);
+        }
+
+        val hash = digest.digest();
+        val sb = new StringBuilder(hash.length * 2);
+        for (val hashByte : hash) {
+            sb.append(Character.forDigit((hashByte >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(hashByte & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+
+    boolean includeGeneratedCode;
+
+    boolean includePrivateMethods;
+
+    boolean preserveStackMapFrames;
+
+    boolean checkInheritedValidationAnnotations;
+
+    @NonNull
+    NullCheckStrategy nullCheckStrategy;
+
+    /**
+     * Methods whose estimated bytecode size is not greater than this value are considered inlinable.
+     * If the value is not positive, sizes of methods are not checked.
+     */
+    int inliningThreshold;
+
+    boolean skipMethodsExceedingInliningThreshold;
+
+    /**
+     * If set, inserted null checks are disabled at runtime if this system property is {@code true}.
+     */
+    @Nullable
+    String killSwitchSystemPropertyName;
+
+    boolean eliminateRedundantChecks;
+
+    /**
+     * If enabled, only classes of packages annotated with non-null-by-default annotations are processed
+     * (or classes annotated with such annotations themselves).
+     */
+    boolean nonNullByDefaultCodeOnly;
+
+    @NonNull
+    AnnotationDescMatcher annotationDescMatcher;
+
+    /**
+     * Hash of all settings that affect processing result.
+     */
+    @NonNull
+    String fingerprint;
+
+}
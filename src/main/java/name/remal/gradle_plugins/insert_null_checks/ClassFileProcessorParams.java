@@ -1,38 +1,58 @@
 package name.remal.gradle_plugins.insert_null_checks;
 
 import java.nio.file.Path;
-import java.util.List;
+import javax.annotation.Nullable;
+import lombok.Builder;
 import lombok.NonNull;
-import lombok.Singular;
 import lombok.experimental.SuperBuilder;
 
 @SuperBuilder
 abstract class ClassFileProcessorParams {
 
-    @NonNull
+    /**
+     * Required only for {@link ClassFileProcessor#process()}.
+     * Bytecode of archive entries is processed without any paths.
+     */
+    @Nullable
     protected final Path sourcePath;
 
-    @NonNull
+    /**
+     * Required only for {@link ClassFileProcessor#process()}.
+     */
+    @Nullable
     protected final Path targetPath;
 
 
-    protected final boolean includeGeneratedCode;
-
-    protected final boolean includePrivateMethods;
-
-    @Singular
-    protected final List<String> exclusionAnnotationClassNames;
-
-    @Singular
-    protected final List<String> validationAnnotationClassNames;
-
-    @Singular
-    protected final List<String> validationAnnotationBasePackages;
-
-    @Singular
-    protected final List<String> nonNullAnnotationClassNames;
+    @NonNull
+    protected final ClassFileProcessorConfig config;
+
+    /**
+     * Required only if {@link ClassFileProcessorConfig#isCheckInheritedValidationAnnotations()} is enabled.
+     */
+    @Nullable
+    protected final ClassHierarchyIndex classHierarchyIndex;
+
+    /**
+     * If not set, package-level annotations are not taken into account.
+     */
+    @Nullable
+    protected final PackageInfoIndex packageInfoIndex;
+
+    /**
+     * Not used if {@link ClassFileProcessorConfig#isCheckInheritedValidationAnnotations()} is enabled,
+     * as processing result depends on other classes then.
+     */
+    @Nullable
+    protected final ProcessedClassCache outputCache;
+
+    /**
+     * If set, the contract of every class is added to it.
+     */
+    @Nullable
+    protected final ContractIndex contractIndex;
 
-    @Singular
-    protected final List<String> nullableAnnotationSimpleClassNames;
+    @NonNull
+    @Builder.Default
+    protected final ProcessingMetrics metrics = new ProcessingMetrics();
 
 }
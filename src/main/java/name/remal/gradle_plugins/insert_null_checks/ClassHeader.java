@@ -0,0 +1,134 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
+import static org.objectweb.asm.Opcodes.ASM9;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.Value;
+import lombok.val;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Class-level information that can be read without parsing methods' code.
+ *
+ * <p>It's enough to decide if a class should be processed at all.
+ */
+@Getter
+class ClassHeader {
+
+    public static ClassHeader readClassHeader(ClassReader classReader) {
+        val header = new ClassHeader();
+        classReader.accept(header.new Reader(), SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+        return header;
+    }
+
+
+    private int version;
+
+    private int access;
+
+    private String name = "";
+
+    @Nullable
+    private String superName;
+
+    private List<String> interfaces = emptyList();
+
+    private boolean definedInMethod;
+
+    private final List<String> annotationDescs = new ArrayList<>();
+
+    private final List<String> invisibleAnnotationDescs = new ArrayList<>();
+
+    private final List<MethodHeader> methods = new ArrayList<>();
+
+    private int methodsCount;
+
+    private boolean processed;
+
+
+    @Value
+    static class MethodHeader {
+        int access;
+        String name;
+        String desc;
+    }
+
+
+    private class Reader extends ClassVisitor {
+
+        Reader() {
+            super(ASM9);
+        }
+
+        @Override
+        public void visit(
+            int version,
+            int access,
+            String name,
+            @Nullable String signature,
+            @Nullable String superName,
+            @Nullable String[] interfaces
+        ) {
+            ClassHeader.this.version = version;
+            ClassHeader.this.access = access;
+            ClassHeader.this.name = name;
+            ClassHeader.this.superName = superName;
+            if (interfaces != null && interfaces.length > 0) {
+                ClassHeader.this.interfaces = unmodifiableList(asList(interfaces));
+            }
+        }
+
+        @Override
+        public void visitOuterClass(String owner, @Nullable String name, @Nullable String descriptor) {
+            if (name != null) {
+                definedInMethod = true;
+            }
+        }
+
+        @Nullable
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            annotationDescs.add(descriptor);
+            if (!visible) {
+                invisibleAnnotationDescs.add(descriptor);
+            }
+            return null;
+        }
+
+        @Override
+        public void visitAttribute(Attribute attribute) {
+            if (ProcessedClassAttribute.NAME.equals(attribute.type)) {
+                processed = true;
+            }
+        }
+
+        @Nullable
+        @Override
+        public MethodVisitor visitMethod(
+            int access,
+            String name,
+            String descriptor,
+            @Nullable String signature,
+            @Nullable String[] exceptions
+        ) {
+            methods.add(new MethodHeader(access, name, descriptor));
+            ++methodsCount;
+            return null;
+        }
+
+    }
+
+}
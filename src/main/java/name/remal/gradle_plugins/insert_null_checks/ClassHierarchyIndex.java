@@ -0,0 +1,406 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.readAllBytes;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.unmodifiableList;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.CONTRACT_INDEX_PATH;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.parseContractIndex;
+import static name.remal.gradle_plugins.insert_null_checks.InputStreamUtils.toByteArray;
+import static org.objectweb.asm.ClassReader.SKIP_CODE;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ASM9;
+
+import java.io.Closeable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+
+/**
+ * Lazily built index of supertypes and their class- and method-level annotations.
+ *
+ * <p>Every type is read from its source at most once, without parsing methods' code.
+ * Inherited annotation categories are memoized per type (and per method of a type),
+ * so all lookups after the first one are O(1).
+ *
+ * <p>An instance is thread-safe and is supposed to be created once per task execution.
+ */
+@RequiredArgsConstructor
+class ClassHierarchyIndex {
+
+    private final List<TypeInfoSource> sources;
+
+    private final AnnotationDescMatcher annotationDescMatcher;
+
+    private final ConcurrentMap<String, Optional<TypeEntry>> typeEntries = new ConcurrentHashMap<>();
+
+
+    /**
+     * Returns a bit mask of annotation categories of the supertypes and all their supertypes.
+     */
+    public int getInheritedClassCategories(@Nullable String superName, List<String> interfaces) {
+        int categories = getClassCategories(superName);
+        for (int i = 0; i < interfaces.size(); ++i) {
+            categories |= getClassCategories(interfaces.get(i));
+        }
+        return categories;
+    }
+
+    /**
+     * Returns a bit mask of annotation categories of the method declared in the supertypes and all their supertypes.
+     */
+    public int getInheritedMethodCategories(@Nullable String superName, List<String> interfaces, String nameDesc) {
+        int categories = getMethodCategories(superName, nameDesc);
+        for (int i = 0; i < interfaces.size(); ++i) {
+            categories |= getMethodCategories(interfaces.get(i), nameDesc);
+        }
+        return categories;
+    }
+
+    private int getClassCategories(@Nullable String internalName) {
+        val typeEntry = getTypeEntry(internalName);
+        return typeEntry != null ? typeEntry.getClassCategories() : 0;
+    }
+
+    private int getMethodCategories(@Nullable String internalName, String nameDesc) {
+        val typeEntry = getTypeEntry(internalName);
+        return typeEntry != null ? typeEntry.getMethodCategories(nameDesc) : 0;
+    }
+
+    @Nullable
+    @SuppressWarnings("OptionalAssignedToNull")
+    private TypeEntry getTypeEntry(@Nullable String internalName) {
+        if (internalName == null) {
+            return null;
+        }
+
+        Optional<TypeEntry> typeEntry = typeEntries.get(internalName);
+        if (typeEntry == null) {
+            // not computed in `computeIfAbsent()`, as reading a type doesn't require any lock
+            typeEntry = Optional.ofNullable(readTypeEntry(internalName));
+            val prevTypeEntry = typeEntries.putIfAbsent(internalName, typeEntry);
+            if (prevTypeEntry != null) {
+                typeEntry = prevTypeEntry;
+            }
+        }
+        return typeEntry.orElse(null);
+    }
+
+    @Nullable
+    private TypeEntry readTypeEntry(String internalName) {
+        for (val source : sources) {
+            val typeInfo = source.findTypeInfo(internalName);
+            if (typeInfo != null) {
+                return new TypeEntry(typeInfo);
+            }
+        }
+        return null;
+    }
+
+
+    private class TypeEntry {
+
+        private static final int NOT_CALCULATED = -1;
+
+        private final TypeInfo typeInfo;
+
+        private volatile int classCategories = NOT_CALCULATED;
+
+        private final ConcurrentMap<String, Integer> methodCategories = new ConcurrentHashMap<>();
+
+        TypeEntry(TypeInfo typeInfo) {
+            this.typeInfo = typeInfo;
+        }
+
+        public int getClassCategories() {
+            int categories = classCategories;
+            if (categories == NOT_CALCULATED) {
+                categories = classify(typeInfo.getAnnotationDescs())
+                    | getInheritedClassCategories(typeInfo.getSuperName(), typeInfo.getInterfaces());
+                classCategories = categories;
+            }
+            return categories;
+        }
+
+        public int getMethodCategories(String nameDesc) {
+            Integer categories = methodCategories.get(nameDesc);
+            if (categories == null) {
+                categories = classify(typeInfo.getMethodAnnotationDescs().getOrDefault(nameDesc, emptyList()))
+                    | getInheritedMethodCategories(typeInfo.getSuperName(), typeInfo.getInterfaces(), nameDesc);
+                methodCategories.put(nameDesc, categories);
+            }
+            return categories;
+        }
+
+        private int classify(List<String> annotationDescs) {
+            int categories = 0;
+            for (int i = 0; i < annotationDescs.size(); ++i) {
+                categories |= annotationDescMatcher.classify(annotationDescs.get(i));
+            }
+            return categories;
+        }
+
+    }
+
+
+    /**
+     * Supertypes and annotations of a type, that can be read without parsing methods' code.
+     *
+     * <p>It doesn't depend on the plugin settings, so it can be shared by all tasks of a build.
+     */
+    @Getter
+    static class TypeInfo {
+
+        public static TypeInfo readTypeInfo(byte[] bytecode) {
+            val typeInfo = new TypeInfo();
+            new ClassReader(bytecode).accept(typeInfo.new Reader(), SKIP_CODE | SKIP_DEBUG | SKIP_FRAMES);
+            return typeInfo;
+        }
+
+        public static TypeInfo newTypeInfo(
+            @Nullable String superName,
+            List<String> interfaces,
+            List<String> annotationDescs,
+            Map<String, List<String>> methodAnnotationDescs
+        ) {
+            val typeInfo = new TypeInfo();
+            typeInfo.superName = superName;
+            if (!interfaces.isEmpty()) {
+                typeInfo.interfaces = unmodifiableList(new ArrayList<>(interfaces));
+            }
+            typeInfo.annotationDescs.addAll(annotationDescs);
+            typeInfo.methodAnnotationDescs.putAll(methodAnnotationDescs);
+            return typeInfo;
+        }
+
+
+        @Nullable
+        private String superName;
+
+        private List<String> interfaces = emptyList();
+
+        private final List<String> annotationDescs = new ArrayList<>();
+
+        /**
+         * Annotation descriptors of overridable methods, by method name + descriptor.
+         * Methods without annotations are not stored.
+         */
+        private final Map<String, List<String>> methodAnnotationDescs = new HashMap<>();
+
+
+        private class Reader extends ClassVisitor {
+
+            Reader() {
+                super(ASM9);
+            }
+
+            @Override
+            public void visit(
+                int version,
+                int access,
+                String name,
+                @Nullable String signature,
+                @Nullable String superName,
+                @Nullable String[] interfaces
+            ) {
+                TypeInfo.this.superName = superName;
+                if (interfaces != null && interfaces.length > 0) {
+                    TypeInfo.this.interfaces = unmodifiableList(asList(interfaces));
+                }
+            }
+
+            @Nullable
+            @Override
+            public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+                annotationDescs.add(descriptor);
+                return null;
+            }
+
+            @Nullable
+            @Override
+            public MethodVisitor visitMethod(
+                int access,
+                String name,
+                String descriptor,
+                @Nullable String signature,
+                @Nullable String[] exceptions
+            ) {
+                if ((access & ACC_PRIVATE) != 0
+                    || (access & ACC_STATIC) != 0
+                    || name.startsWith("<")
+                ) {
+                    // such methods can't be overridden
+                    return null;
+                }
+
+                return new MethodVisitor(ASM9) {
+                    private final List<String> descs = new ArrayList<>();
+
+                    @Nullable
+                    @Override
+                    public AnnotationVisitor visitAnnotation(String annotationDescriptor, boolean visible) {
+                        descs.add(annotationDescriptor);
+                        return null;
+                    }
+
+                    @Override
+                    public void visitEnd() {
+                        if (!descs.isEmpty()) {
+                            methodAnnotationDescs.put(name + descriptor, descs);
+                        }
+                    }
+                };
+            }
+
+        }
+
+    }
+
+
+    interface TypeInfoSource {
+
+        @Nullable
+        TypeInfo findTypeInfo(String internalName);
+
+    }
+
+    /**
+     * Reads class files of a directory. Nothing is cached, as the directory can be changed by the next compilation.
+     */
+    @RequiredArgsConstructor
+    static class DirectoryTypeInfoSource implements TypeInfoSource {
+
+        private final Path dirPath;
+
+        @Nullable
+        @Override
+        @SneakyThrows
+        public TypeInfo findTypeInfo(String internalName) {
+            val classFilePath = dirPath.resolve(internalName + ".class");
+            if (!isRegularFile(classFilePath)) {
+                return null;
+            }
+
+            return TypeInfo.readTypeInfo(readAllBytes(classFilePath));
+        }
+
+    }
+
+    /**
+     * Reads class files of a JAR file. The JAR file is opened once, and all read types are cached.
+     */
+    @RequiredArgsConstructor
+    static class JarTypeInfoSource implements TypeInfoSource, Closeable {
+
+        private final Path jarPath;
+
+        private final ConcurrentMap<String, Optional<TypeInfo>> typeInfos = new ConcurrentHashMap<>();
+
+        @Nullable
+        private ZipFile zipFile;
+
+        /**
+         * Contract index of the JAR, if it has been written by the plugin.
+         * Types found in the index are not read from class files.
+         */
+        @Nullable
+        private ContractIndex contractIndex;
+
+        private boolean closed;
+
+        @Nullable
+        @Override
+        @SuppressWarnings("OptionalAssignedToNull")
+        public TypeInfo findTypeInfo(String internalName) {
+            Optional<TypeInfo> typeInfo = typeInfos.get(internalName);
+            if (typeInfo == null) {
+                typeInfo = Optional.ofNullable(readTypeInfo(internalName));
+                val prevTypeInfo = typeInfos.putIfAbsent(internalName, typeInfo);
+                if (prevTypeInfo != null) {
+                    typeInfo = prevTypeInfo;
+                }
+            }
+            return typeInfo.orElse(null);
+        }
+
+        @Nullable
+        @SneakyThrows
+        private TypeInfo readTypeInfo(String internalName) {
+            val zip = getZipFile();
+            if (zip == null) {
+                return null;
+            }
+
+            val contracts = getContractIndex();
+            if (contracts != null) {
+                val typeInfo = contracts.findTypeInfo(internalName);
+                if (typeInfo != null) {
+                    return typeInfo;
+                }
+            }
+
+            val entry = zip.getEntry(internalName + ".class");
+            if (entry == null || entry.isDirectory()) {
+                return null;
+            }
+
+            final byte[] bytecode;
+            try (val in = zip.getInputStream(entry)) {
+                bytecode = toByteArray(in);
+            }
+            return TypeInfo.readTypeInfo(bytecode);
+        }
+
+        @Nullable
+        @SneakyThrows
+        private synchronized ZipFile getZipFile() {
+            if (zipFile == null && !closed) {
+                zipFile = new ZipFile(jarPath.toFile());
+                val entry = zipFile.getEntry(CONTRACT_INDEX_PATH);
+                if (entry != null && !entry.isDirectory()) {
+                    try (val in = zipFile.getInputStream(entry)) {
+                        contractIndex = parseContractIndex(new String(toByteArray(in), UTF_8));
+                    }
+                }
+            }
+            return zipFile;
+        }
+
+        @Nullable
+        private synchronized ContractIndex getContractIndex() {
+            return contractIndex;
+        }
+
+        @Override
+        @SneakyThrows
+        public synchronized void close() {
+            closed = true;
+            if (zipFile != null) {
+                zipFile.close();
+                zipFile = null;
+            }
+        }
+
+    }
+
+}
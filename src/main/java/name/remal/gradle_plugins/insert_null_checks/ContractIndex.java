@@ -0,0 +1,338 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.readAllBytes;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptySet;
+import static name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfo.newTypeInfo;
+import static name.remal.gradle_plugins.insert_null_checks.NullCheckedParametersScanner.findNullCheckedParameters;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+import static org.objectweb.asm.ClassReader.SKIP_FRAMES;
+import static org.objectweb.asm.Opcodes.ACC_MODULE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ASM9;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Predicate;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfo;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.tree.AnnotationNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Nullability contracts of classes, written to {@value #CONTRACT_INDEX_PATH} next to processed class files.
+ *
+ * <p>For every class, the index contains its supertypes and annotations. For every non-private method,
+ * it contains indexes of parameters that are checked for null at the beginning of the method
+ * (by inserted checks, or by the method itself), and annotations of the method, if it can be overridden.
+ * Downstream builds read this index once, instead of parsing class files of a dependency
+ * to resolve inherited annotations.
+ *
+ * <p>The index is a UTF-8 text file, sorted by class name, with tab-separated lines:
+ * <pre>
+ * insert-null-checks-contracts	1
+ * C	&lt;class&gt;	&lt;super class&gt;	&lt;interfaces&gt;	&lt;annotations&gt;
+ * M	&lt;class&gt;	&lt;method name and descriptor&gt;	&lt;checked parameter indexes&gt;	&lt;annotations&gt;
+ * </pre>
+ * Lists are comma-separated. Lines of methods follow the line of their class.
+ *
+ * <p>Thread-safe.
+ */
+class ContractIndex {
+
+    public static final String CONTRACT_INDEX_PATH = "META-INF/insert-null-checks.idx";
+
+    private static final String HEADER = "insert-null-checks-contracts\t1";
+
+    private static final String CLASS_LINE_PREFIX = "C";
+
+    private static final String METHOD_LINE_PREFIX = "M";
+
+
+    /**
+     * Returns an empty index, if the content has an unsupported format.
+     */
+    public static ContractIndex parseContractIndex(CharSequence content) {
+        val index = new ContractIndex();
+        val lines = content.toString().split("\n");
+        if (lines.length == 0 || !lines[0].equals(HEADER)) {
+            return index;
+        }
+
+        for (int i = 1; i < lines.length; ++i) {
+            val fields = lines[i].split("\t", -1);
+            if (fields.length == 5 && fields[0].equals(CLASS_LINE_PREFIX)) {
+                index.classContracts.put(fields[1], new ClassContract(
+                    fields[2].isEmpty() ? null : fields[2],
+                    parseList(fields[3]),
+                    parseList(fields[4]),
+                    new TreeMap<>()
+                ));
+
+            } else if (fields.length == 5 && fields[0].equals(METHOD_LINE_PREFIX)) {
+                val classContract = index.classContracts.get(fields[1]);
+                if (classContract != null) {
+                    Set<Integer> checkedParamIndexes = new TreeSet<>();
+                    parseList(fields[3]).forEach(paramIndex -> checkedParamIndexes.add(Integer.parseInt(paramIndex)));
+                    classContract.getMethodContracts().put(fields[2], new MethodContract(
+                        checkedParamIndexes,
+                        parseList(fields[4])
+                    ));
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Reads an index file. Returns an empty index, if the file doesn't exist.
+     *
+     * <p>The file isn't memory-mapped, as it's replaced after reading, and a mapped file can't be replaced on Windows.
+     */
+    @SneakyThrows
+    public static ContractIndex readContractIndex(Path path) {
+        if (!isRegularFile(path)) {
+            return new ContractIndex();
+        }
+
+        return parseContractIndex(new String(readAllBytes(path), UTF_8));
+    }
+
+    private static List<String> parseList(String field) {
+        return field.isEmpty() ? emptyList() : asList(field.split(","));
+    }
+
+
+    private final ConcurrentMap<String, ClassContract> classContracts = new ConcurrentSkipListMap<>();
+
+    /**
+     * Adds the contract of a class, read from its final bytecode, replacing the previous one.
+     *
+     * @param killSwitchSystemPropertyName the system property that disables inserted checks, if configured
+     */
+    public void addClass(byte[] bytecode, @Nullable String killSwitchSystemPropertyName) {
+        val reader = new ContractReader(killSwitchSystemPropertyName);
+        new ClassReader(bytecode).accept(reader, SKIP_DEBUG | SKIP_FRAMES);
+        if (!reader.isModule) {
+            classContracts.put(reader.className, new ClassContract(
+                reader.superName,
+                reader.interfaces,
+                reader.annotationDescs,
+                reader.methodContracts
+            ));
+        }
+    }
+
+    public boolean containsClass(String internalName) {
+        return classContracts.containsKey(internalName);
+    }
+
+    /**
+     * Removes contracts of classes that don't exist anymore.
+     */
+    public void retainClasses(Predicate<String> internalNamePredicate) {
+        classContracts.keySet().removeIf(internalNamePredicate.negate());
+    }
+
+    public void addAll(ContractIndex other) {
+        classContracts.putAll(other.classContracts);
+    }
+
+    @Nullable
+    public TypeInfo findTypeInfo(String internalName) {
+        val classContract = classContracts.get(internalName);
+        return classContract != null ? classContract.toTypeInfo() : null;
+    }
+
+    public byte[] toBytes() {
+        val content = new StringBuilder();
+        content.append(HEADER).append('\n');
+        classContracts.forEach((internalName, classContract) -> {
+            content.append(CLASS_LINE_PREFIX)
+                .append('\t').append(internalName)
+                .append('\t').append(classContract.getSuperName() != null ? classContract.getSuperName() : "")
+                .append('\t').append(String.join(",", classContract.getInterfaces()))
+                .append('\t').append(String.join(",", classContract.getAnnotationDescs()))
+                .append('\n');
+            classContract.getMethodContracts().forEach((nameDesc, methodContract) -> {
+                content.append(METHOD_LINE_PREFIX)
+                    .append('\t').append(internalName)
+                    .append('\t').append(nameDesc)
+                    .append('\t').append(joinIndexes(methodContract.getCheckedParamIndexes()))
+                    .append('\t').append(String.join(",", methodContract.getAnnotationDescs()))
+                    .append('\n');
+            });
+        });
+        return content.toString().getBytes(UTF_8);
+    }
+
+    private static String joinIndexes(Collection<Integer> indexes) {
+        val sb = new StringBuilder();
+        for (val index : indexes) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(index);
+        }
+        return sb.toString();
+    }
+
+
+    @Value
+    static class ClassContract {
+
+        @Nullable
+        String superName;
+
+        List<String> interfaces;
+
+        List<String> annotationDescs;
+
+        /**
+         * By method name + descriptor.
+         */
+        SortedMap<String, MethodContract> methodContracts;
+
+        public TypeInfo toTypeInfo() {
+            Map<String, List<String>> methodAnnotationDescs = new LinkedHashMap<>();
+            methodContracts.forEach((nameDesc, methodContract) -> {
+                if (!methodContract.getAnnotationDescs().isEmpty()) {
+                    methodAnnotationDescs.put(nameDesc, methodContract.getAnnotationDescs());
+                }
+            });
+            return newTypeInfo(superName, interfaces, annotationDescs, methodAnnotationDescs);
+        }
+
+    }
+
+    @Value
+    static class MethodContract {
+
+        Set<Integer> checkedParamIndexes;
+
+        /**
+         * Stored for methods that can be overridden only, the same way as {@link TypeInfo} does it.
+         */
+        List<String> annotationDescs;
+
+    }
+
+
+    private static class ContractReader extends ClassVisitor {
+
+        @Nullable
+        private final String killSwitchSystemPropertyName;
+
+        private String className = "";
+
+        private boolean isModule;
+
+        @Nullable
+        private String superName;
+
+        private List<String> interfaces = emptyList();
+
+        private final List<String> annotationDescs = new ArrayList<>();
+
+        private final SortedMap<String, MethodContract> methodContracts = new TreeMap<>();
+
+        ContractReader(@Nullable String killSwitchSystemPropertyName) {
+            super(ASM9);
+            this.killSwitchSystemPropertyName = killSwitchSystemPropertyName;
+        }
+
+        @Override
+        public void visit(
+            int version,
+            int access,
+            String name,
+            @Nullable String signature,
+            @Nullable String superName,
+            @Nullable String[] interfaces
+        ) {
+            this.className = name;
+            this.isModule = (access & ACC_MODULE) != 0;
+            this.superName = superName;
+            if (interfaces != null && interfaces.length > 0) {
+                this.interfaces = asList(interfaces);
+            }
+        }
+
+        @Nullable
+        @Override
+        public AnnotationVisitor visitAnnotation(String descriptor, boolean visible) {
+            annotationDescs.add(descriptor);
+            return null;
+        }
+
+        @Nullable
+        @Override
+        public MethodVisitor visitMethod(
+            int access,
+            String name,
+            String descriptor,
+            @Nullable String signature,
+            @Nullable String[] exceptions
+        ) {
+            if ((access & ACC_PRIVATE) != 0 || (access & ACC_SYNTHETIC) != 0) {
+                // such methods are not a part of the contract
+                return null;
+            }
+
+            val isOverridable = (access & ACC_STATIC) == 0 && !name.startsWith("<");
+            if (!isOverridable && descriptor.startsWith("()")) {
+                return null;
+            }
+
+            return new MethodNode(ASM9, access, name, descriptor, signature, exceptions) {
+                @Override
+                public void visitEnd() {
+                    Set<Integer> checkedParamIndexes = descriptor.startsWith("()")
+                        ? emptySet()
+                        : new TreeSet<>(findNullCheckedParameters(this, killSwitchSystemPropertyName));
+                    List<String> methodAnnotationDescs = new ArrayList<>();
+                    if (isOverridable) {
+                        addAnnotationDescs(methodAnnotationDescs, visibleAnnotations);
+                        addAnnotationDescs(methodAnnotationDescs, invisibleAnnotations);
+                    }
+                    if (!checkedParamIndexes.isEmpty() || !methodAnnotationDescs.isEmpty()) {
+                        methodContracts.put(name + descriptor, new MethodContract(
+                            checkedParamIndexes,
+                            methodAnnotationDescs
+                        ));
+                    }
+                }
+            };
+        }
+
+        private static void addAnnotationDescs(List<String> descs, @Nullable List<AnnotationNode> annotations) {
+            if (annotations != null) {
+                annotations.forEach(annotation -> descs.add(annotation.desc));
+            }
+        }
+
+    }
+
+}
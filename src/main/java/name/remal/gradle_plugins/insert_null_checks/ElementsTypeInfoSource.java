@@ -0,0 +1,171 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfo.newTypeInfo;
+import static name.remal.gradle_plugins.insert_null_checks.PackageInfoIndex.PACKAGE_INFO_SIMPLE_NAME;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfo;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfoSource;
+
+/**
+ * Reads supertypes and annotations from the compiler's model, instead of reading class files.
+ *
+ * <p>The compiler has already loaded all types of the compile classpath that are required for compilation,
+ * so nothing has to be read twice. Must be used in the compiler thread only.
+ */
+@RequiredArgsConstructor
+class ElementsTypeInfoSource implements TypeInfoSource {
+
+    private final Elements elements;
+
+    private final Types types;
+
+    @Nullable
+    @Override
+    public TypeInfo findTypeInfo(String internalName) {
+        if (internalName.endsWith('/' + PACKAGE_INFO_SIMPLE_NAME)) {
+            return findPackageInfo(internalName);
+        }
+
+        val typeElement = findTypeElement(internalName);
+        if (typeElement == null) {
+            return null;
+        }
+
+        val superclass = typeElement.getSuperclass();
+        val superName = superclass.getKind() == TypeKind.DECLARED ? getInternalName(superclass) : null;
+
+        List<String> interfaces = new ArrayList<>();
+        for (val interfaceType : typeElement.getInterfaces()) {
+            interfaces.add(getInternalName(interfaceType));
+        }
+
+        Map<String, List<String>> methodAnnotationDescs = new HashMap<>();
+        for (val element : typeElement.getEnclosedElements()) {
+            if (element.getKind() != ElementKind.METHOD
+                || element.getModifiers().contains(Modifier.PRIVATE)
+                || element.getModifiers().contains(Modifier.STATIC)
+            ) {
+                continue;
+            }
+
+            val annotationDescs = getAnnotationDescs(element.getAnnotationMirrors());
+            if (!annotationDescs.isEmpty()) {
+                val method = (ExecutableElement) element;
+                methodAnnotationDescs.put(method.getSimpleName() + getMethodDescriptor(method), annotationDescs);
+            }
+        }
+
+        return newTypeInfo(
+            superName,
+            interfaces,
+            getAnnotationDescs(typeElement.getAnnotationMirrors()),
+            methodAnnotationDescs
+        );
+    }
+
+    /**
+     * {@code package-info} classes are not represented by type elements, so package elements are used instead.
+     */
+    @Nullable
+    private TypeInfo findPackageInfo(String internalName) {
+        val packageName = internalName.substring(0, internalName.lastIndexOf('/')).replace('/', '.');
+        val packageElement = elements.getPackageElement(packageName);
+        if (packageElement == null) {
+            return null;
+        }
+
+        return newTypeInfo(
+            null,
+            emptyList(),
+            getAnnotationDescs(packageElement.getAnnotationMirrors()),
+            emptyMap()
+        );
+    }
+
+    @Nullable
+    private TypeElement findTypeElement(String internalName) {
+        val name = internalName.replace('/', '.');
+        val typeElement = elements.getTypeElement(name);
+        if (typeElement != null) {
+            return typeElement;
+        }
+
+        // nested classes are found by canonical names
+        return elements.getTypeElement(name.replace('$', '.'));
+    }
+
+    private List<String> getAnnotationDescs(List<? extends AnnotationMirror> annotations) {
+        List<String> descs = new ArrayList<>(annotations.size());
+        for (val annotation : annotations) {
+            descs.add(getDescriptor(annotation.getAnnotationType()));
+        }
+        return descs;
+    }
+
+    private String getMethodDescriptor(ExecutableElement method) {
+        val desc = new StringBuilder().append('(');
+        for (val param : method.getParameters()) {
+            desc.append(getDescriptor(param.asType()));
+        }
+        return desc.append(')').append(getDescriptor(method.getReturnType())).toString();
+    }
+
+    @SuppressWarnings("java:S1479")
+    private String getDescriptor(TypeMirror type) {
+        val erasure = types.erasure(type);
+        switch (erasure.getKind()) {
+            case BOOLEAN:
+                return "Z";
+            case BYTE:
+                return "B";
+            case SHORT:
+                return "S";
+            case INT:
+                return "I";
+            case LONG:
+                return "J";
+            case CHAR:
+                return "C";
+            case FLOAT:
+                return "F";
+            case DOUBLE:
+                return "D";
+            case VOID:
+                return "V";
+            case ARRAY:
+                return '[' + getDescriptor(((ArrayType) erasure).getComponentType());
+            default:
+                return 'L' + getInternalName(erasure) + ';';
+        }
+    }
+
+    private String getInternalName(TypeMirror type) {
+        val erasure = types.erasure(type);
+        if (erasure instanceof DeclaredType) {
+            val element = (TypeElement) ((DeclaredType) erasure).asElement();
+            return elements.getBinaryName(element).toString().replace('.', '/');
+        }
+        return "java/lang/Object";
+    }
+
+}
@@ -0,0 +1,34 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * {@code InputStream.readAllBytes()} is not available on Java 8.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class InputStreamUtils {
+
+    private static final int BUFFER_SIZE = 8192;
+
+
+    /**
+     * Reads all remaining bytes. The stream is not closed.
+     */
+    @SneakyThrows
+    public static byte[] toByteArray(InputStream in) {
+        val out = new ByteArrayOutputStream();
+        val buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+}
@@ -0,0 +1,189 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Boolean.TRUE;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.walk;
+import static java.util.stream.Collectors.toCollection;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.CONTRACT_INDEX_PATH;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.copyIfChanged;
+import static name.remal.gradle_plugins.insert_null_checks.OutputFileUtils.writeIfChanged;
+import static name.remal.gradle_plugins.insert_null_checks.ParallelProcessingUtils.forEachInParallel;
+import static org.gradle.api.tasks.PathSensitivity.RELATIVE;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.inject.Inject;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Counter;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileSystemOperations;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Copies class files compiled from a source set into {@link #getDestinationDirectory()}, inserting null checks.
+ *
+ * <p>Unlike processing in a {@code doLast} action of a compile task, outputs of this task are cached separately.
+ */
+@CacheableTask
+public abstract class InsertNullChecks extends DefaultTask implements InsertNullChecksProperties {
+
+    @InputFiles
+    @PathSensitive(RELATIVE)
+    @IgnoreEmptyDirectories
+    public abstract ConfigurableFileCollection getClassesDirs();
+
+    /**
+     * Compile classpath of the source set. It's used to search supertypes of compiled classes.
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getDestinationDirectory();
+
+    @Input
+    public abstract Property<Boolean> getTestSourceSet();
+
+    /**
+     * JSON report with processing metrics.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @Internal
+    public abstract Property<InsertNullChecksBuildService> getBuildService();
+
+
+    @TaskAction
+    @SneakyThrows
+    public void execute() {
+        // the destination directory isn't cleaned, so files with the same content are not rewritten
+        val destinationDir = getDestinationDirectory().get().getAsFile();
+        val destinationDirPath = createDirectories(destinationDir.toPath());
+
+        val isProcessingEnabled = !TRUE.equals(getTestSourceSet().get())
+            || TRUE.equals(getIncludeTestCode().get());
+        val metrics = new ProcessingMetrics();
+        val buildService = getBuildService().get();
+        val config = buildService.getConfig(this);
+        val classHierarchyIndex = isProcessingEnabled && config.isCheckInheritedValidationAnnotations()
+            ? buildService.createClassHierarchyIndex(
+                config,
+                concat(getClassesDirs().getFiles().stream(), getClasspath().getFiles().stream()).collect(toList())
+            )
+            : null;
+        val packageInfoIndex = isProcessingEnabled
+            ? buildService.createPackageInfoIndex(config, getClassesDirs())
+            : null;
+        val outputCache = isProcessingEnabled ? buildService.getOutputCache(this) : null;
+        val processingBudget = buildService.getProcessingBudget();
+        val contractIndex = isProcessingEnabled && TRUE.equals(getWriteContractIndex().get())
+            ? new ContractIndex()
+            : null;
+        val contractIndexPath = destinationDirPath.resolve(CONTRACT_INDEX_PATH);
+
+        List<FileToCopy> filesToCopy = new ArrayList<>();
+        getClassesDirs().getAsFileTree().visit(details -> {
+            if (!details.isDirectory()) {
+                filesToCopy.add(new FileToCopy(
+                    details.getFile().toPath(),
+                    destinationDirPath.resolve(details.getRelativePath().getPathString())
+                ));
+            }
+        });
+        Set<Path> targetPaths = filesToCopy.stream()
+            .map(FileToCopy::getTargetPath)
+            .collect(toCollection(HashSet::new));
+        if (contractIndex != null) {
+            targetPaths.add(contractIndexPath);
+        }
+        deleteStaleFiles(destinationDirPath, targetPaths);
+
+        forEachInParallel(filesToCopy, getParallelism().get(), fileToCopy -> {
+            val sourcePath = fileToCopy.getSourcePath();
+            val targetPath = fileToCopy.getTargetPath();
+            val isClassFile = sourcePath.getFileName().toString().endsWith(".class");
+            if (isClassFile) {
+                metrics.increment(Counter.FILES_SCANNED);
+            }
+            if (isProcessingEnabled && isClassFile) {
+                processingBudget.run(sourcePath.toFile().length(), metrics, () ->
+                    ClassFileProcessor.builder()
+                        .sourcePath(sourcePath)
+                        .targetPath(targetPath)
+                        .config(config)
+                        .classHierarchyIndex(classHierarchyIndex)
+                        .packageInfoIndex(packageInfoIndex)
+                        .outputCache(outputCache)
+                        .contractIndex(contractIndex)
+                        .metrics(metrics)
+                        .build()
+                        .process()
+                );
+            } else {
+                copyIfChanged(sourcePath, targetPath);
+            }
+        });
+
+        if (contractIndex != null) {
+            writeIfChanged(contractIndexPath, contractIndex.toBytes());
+        }
+
+        val reportPath = getReportFile().get().getAsFile().toPath();
+        metrics.writeJsonReport(reportPath, getPath());
+        getLogger().info("Inserting null checks: {}", metrics.toSummary());
+        metrics.getInliningThresholdMessages().forEach(getLogger()::info);
+        val inliningThresholdWarning = metrics.getInliningThresholdWarning(reportPath);
+        if (inliningThresholdWarning != null) {
+            getLogger().warn(inliningThresholdWarning);
+        }
+        metrics.getWarnings().forEach(getLogger()::warn);
+    }
+
+    /**
+     * Deletes files of previous executions that are not produced by this execution.
+     */
+    @SneakyThrows
+    private void deleteStaleFiles(Path destinationDirPath, Set<Path> targetPaths) {
+        List<Path> stalePaths = new ArrayList<>();
+        try (val paths = walk(destinationDirPath)) {
+            paths.filter(path -> !isDirectory(path) && !targetPaths.contains(path))
+                .forEach(stalePaths::add);
+        }
+        if (!stalePaths.isEmpty()) {
+            getFiles().delete(spec -> spec.delete(stalePaths.toArray()));
+        }
+    }
+
+    @Value
+    private static class FileToCopy {
+        Path sourcePath;
+        Path targetPath;
+    }
+
+
+    @Inject
+    protected abstract FileSystemOperations getFiles();
+
+}
@@ -0,0 +1,104 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Boolean.TRUE;
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static java.util.stream.Stream.concat;
+import static org.gradle.api.tasks.PathSensitivity.NONE;
+
+import java.util.stream.Stream;
+import lombok.val;
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Copies a JAR (or any ZIP) archive into {@link #getDestinationFile()}, inserting null checks into its classes.
+ *
+ * <p>Entries are streamed from one archive to another. Classes are processed in memory,
+ * other entries are copied without recompression.
+ *
+ * <p>Properties of {@link InsertNullChecksProperties} are taken from the {@code insertNullChecks} extension
+ * by default.
+ */
+@CacheableTask
+public abstract class InsertNullChecksArchive extends DefaultTask implements InsertNullChecksProperties {
+
+    @InputFile
+    @PathSensitive(NONE)
+    public abstract RegularFileProperty getArchiveFile();
+
+    /**
+     * Only classes of these packages (and their subpackages) are processed. If empty, all classes are processed.
+     */
+    @Input
+    public abstract SetProperty<String> getIncludedPackages();
+
+    /**
+     * Classpath used to search supertypes of archive classes.
+     */
+    @Classpath
+    public abstract ConfigurableFileCollection getClasspath();
+
+    @OutputFile
+    public abstract RegularFileProperty getDestinationFile();
+
+    /**
+     * JSON report with processing metrics.
+     */
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @Internal
+    public abstract Property<InsertNullChecksBuildService> getBuildService();
+
+
+    @TaskAction
+    public void execute() {
+        val metrics = new ProcessingMetrics();
+        val buildService = getBuildService().get();
+        val config = buildService.getConfig(this);
+        val archiveFile = getArchiveFile().get().getAsFile();
+        val classHierarchyIndex = config.isCheckInheritedValidationAnnotations()
+            ? buildService.createClassHierarchyIndex(
+                config,
+                concat(Stream.of(archiveFile), getClasspath().getFiles().stream()).collect(toList())
+            )
+            : null;
+
+        ArchiveProcessor.builder()
+            .sourcePath(archiveFile.toPath())
+            .targetPath(getDestinationFile().get().getAsFile().toPath())
+            .includedPackages(getIncludedPackages().get())
+            .config(config)
+            .classHierarchyIndex(classHierarchyIndex)
+            .packageInfoIndex(buildService.createPackageInfoIndex(config, singletonList(archiveFile)))
+            .outputCache(buildService.getOutputCache(this))
+            .contractIndex(TRUE.equals(getWriteContractIndex().get()) ? new ContractIndex() : null)
+            .processingBudget(buildService.getProcessingBudget())
+            .metrics(metrics)
+            .build()
+            .process();
+
+        val reportPath = getReportFile().get().getAsFile().toPath();
+        metrics.writeJsonReport(reportPath, getPath());
+        getLogger().info("Inserting null checks: {}", metrics.toSummary());
+        metrics.getInliningThresholdMessages().forEach(getLogger()::info);
+        val inliningThresholdWarning = metrics.getInliningThresholdWarning(reportPath);
+        if (inliningThresholdWarning != null) {
+            getLogger().warn(inliningThresholdWarning);
+        }
+        metrics.getWarnings().forEach(getLogger()::warn);
+    }
+
+}
@@ -0,0 +1,141 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Boolean.TRUE;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isRegularFile;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorConfig.calculateConfigFingerprint;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorConfig.createClassFileProcessorConfig;
+import static name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.ClassFileState.readClassFileState;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+import lombok.Getter;
+import lombok.Value;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.DirectoryTypeInfoSource;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.JarTypeInfoSource;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfoSource;
+import name.remal.gradle_plugins.insert_null_checks.ProcessedClassFilesManifest.ClassFileState;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Build-wide state shared by all projects that apply {@link InsertNullChecksPlugin}.
+ *
+ * <p>Everything that is expensive to prepare is prepared once per build
+ * instead of once per compile or {@link InsertNullChecks} task.
+ */
+abstract class InsertNullChecksBuildService
+    implements BuildService<InsertNullChecksBuildService.Parameters>, AutoCloseable {
+
+    interface Parameters extends BuildServiceParameters {
+
+        /**
+         * Max number of class files processed at the same time in the whole build.
+         */
+        Property<Integer> getMaxWorkers();
+
+        /**
+         * Max total size in bytes of class files processed at the same time in the whole build.
+         */
+        Property<Long> getMaxInFlightBytes();
+
+    }
+
+
+    /**
+     * Shared by all tasks, so the limits are applied to the whole build.
+     */
+    @Getter
+    private final ProcessingBudget processingBudget = new ProcessingBudget(
+        getParameters().getMaxWorkers().get(),
+        getParameters().getMaxInFlightBytes().get()
+    );
+
+    private final ConcurrentMap<String, ClassFileProcessorConfig> configs = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<JarKey, JarTypeInfoSource> jarTypeInfoSources = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<Path, ProcessedClassCache> outputCaches = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a shared config for the properties.
+     *
+     * <p>Projects configured in the same way get the same instance, so the annotation matcher is compiled only once.
+     */
+    public ClassFileProcessorConfig getConfig(InsertNullChecksProperties properties) {
+        val fingerprint = calculateConfigFingerprint(properties);
+        return configs.computeIfAbsent(fingerprint, __ -> createClassFileProcessorConfig(properties));
+    }
+
+    /**
+     * Creates a class hierarchy index for class directories and JAR files of the classpath, in the given order.
+     *
+     * <p>JAR files are opened once per build, and types read from them are shared by all indexes.
+     */
+    public ClassHierarchyIndex createClassHierarchyIndex(ClassFileProcessorConfig config, Iterable<File> classpath) {
+        return new ClassHierarchyIndex(createTypeInfoSources(classpath), config.getAnnotationDescMatcher());
+    }
+
+    /**
+     * Creates a package-info index for class directories and JAR files, in the given order.
+     */
+    public PackageInfoIndex createPackageInfoIndex(ClassFileProcessorConfig config, Iterable<File> classpath) {
+        return new PackageInfoIndex(createTypeInfoSources(classpath), config.getAnnotationDescMatcher());
+    }
+
+    private List<TypeInfoSource> createTypeInfoSources(Iterable<File> classpath) {
+        List<TypeInfoSource> sources = new ArrayList<>();
+        for (val file : classpath) {
+            val path = file.toPath();
+            if (isDirectory(path)) {
+                sources.add(new DirectoryTypeInfoSource(path));
+            } else if (isRegularFile(path)) {
+                // a changed JAR file gets a new key, so stale types are never returned
+                val jarKey = new JarKey(file.getAbsolutePath(), readClassFileState(path));
+                sources.add(jarTypeInfoSources.computeIfAbsent(jarKey, __ -> new JarTypeInfoSource(path)));
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Returns the output cache configured by the properties, or {@code null} if it's disabled.
+     *
+     * <p>Caches are shared by directory, so if projects set different size limits for the same directory,
+     * the limit of the first project is used. Least recently used entries are evicted when the build finishes.
+     */
+    @Nullable
+    public ProcessedClassCache getOutputCache(InsertNullChecksProperties properties) {
+        if (!TRUE.equals(properties.getUseOutputCache().get())) {
+            return null;
+        }
+
+        val directory = properties.getOutputCacheDirectory().get().getAsFile().toPath().toAbsolutePath();
+        val maxSize = properties.getOutputCacheMaxSize().get();
+        return outputCaches.computeIfAbsent(directory, __ -> new ProcessedClassCache(directory, maxSize));
+    }
+
+    @Value
+    private static class JarKey {
+        String path;
+        ClassFileState state;
+    }
+
+
+    @Override
+    public void close() {
+        jarTypeInfoSources.values().forEach(JarTypeInfoSource::close);
+        jarTypeInfoSources.clear();
+
+        outputCaches.values().forEach(ProcessedClassCache::evict);
+        outputCaches.clear();
+    }
+
+}
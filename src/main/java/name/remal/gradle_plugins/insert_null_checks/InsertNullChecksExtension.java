@@ -2,6 +2,7 @@ package name.remal.gradle_plugins.insert_null_checks;
 
 import static java.util.stream.Collectors.toList;
 import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.EXCLUSION_ANNOTATION_CLASS_NAMES;
+import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES;
 import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NOT_NULL_ANNOTATION_CLASS_NAMES;
 import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.NULLABLE_ANNOTATION_CLASS_NAMES;
 import static name.remal.gradle_plugins.insert_null_checks.NullabilityAnnotations.VALIDATION_ANNOTATION_BASE_PACKAGES;
@@ -19,16 +20,30 @@ public abstract class InsertNullChecksExtension implements InsertNullChecksPrope
         getIncludeTestCode().set(false);
         getIncludeGeneratedCode().set(true);
         getIncludePrivateMethods().set(false);
+        getPreserveStackMapFrames().set(false);
+        getCheckInheritedValidationAnnotations().set(false);
+        getNullCheckStrategy().set(NullCheckStrategy.REQUIRE_NON_NULL);
+        getInliningThreshold().set(35);
+        getSkipMethodsExceedingInliningThreshold().set(false);
+        getEliminateRedundantChecks().set(true);
+        getNonNullByDefaultCodeOnly().set(false);
         getExclusionAnnotationClassNames().set(EXCLUSION_ANNOTATION_CLASS_NAMES);
         getValidationAnnotationClassNames().set(VALIDATION_ANNOTATION_CLASS_NAMES);
         getValidationAnnotationBasePackages().set(VALIDATION_ANNOTATION_BASE_PACKAGES);
         getNonNullAnnotationClassNames().set(NOT_NULL_ANNOTATION_CLASS_NAMES);
+        getNonNullByDefaultAnnotationClassNames().set(NON_NULL_BY_DEFAULT_ANNOTATION_CLASS_NAMES);
         getNullableAnnotationSimpleClassNames().set(NULLABLE_ANNOTATION_CLASS_NAMES.stream()
             .map(className -> substringAfterLast(className, "."))
             .distinct()
             .sorted()
             .collect(toList())
         );
+        getWriteContractIndex().set(false);
+        getParallelism().set(1);
+        getUseOutputCache().set(false);
+        getOutputCacheMaxSize().set(256L * 1024 * 1024);
+        getUseDedicatedTasks().set(false);
+        getUseJavacPlugin().set(false);
     }
 
 }
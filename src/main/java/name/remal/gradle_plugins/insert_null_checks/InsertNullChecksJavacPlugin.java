@@ -0,0 +1,120 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static com.sun.source.util.TaskEvent.Kind.GENERATE;
+import static java.nio.file.Files.isRegularFile;
+import static java.util.Collections.singletonList;
+import static javax.tools.Diagnostic.Kind.WARNING;
+import static name.remal.gradle_plugins.insert_null_checks.JavacPluginOptions.parsePluginArgs;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.Plugin;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.source.util.Trees;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfoSource;
+
+/**
+ * javac plugin that inserts null checks right after the compiler generates a class file.
+ *
+ * <p>It's registered by {@link InsertNullChecksPlugin} for {@code JavaCompile} tasks
+ * if {@link InsertNullChecksProperties#getUseJavacPlugin()} is enabled.
+ * Classes are processed in the compiler thread, so no separate pass over the output directory is needed.
+ *
+ * <p>This class is loaded by the compiler, so it must not depend on Gradle API.
+ */
+public class InsertNullChecksJavacPlugin implements Plugin {
+
+    public static final String NAME = "InsertNullChecks";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void init(JavacTask task, String... args) {
+        val options = parsePluginArgs(args);
+        val config = options.toConfig();
+        List<TypeInfoSource> typeInfoSources = singletonList(
+            new ElementsTypeInfoSource(task.getElements(), task.getTypes())
+        );
+        val classHierarchyIndex = config.isCheckInheritedValidationAnnotations()
+            ? new ClassHierarchyIndex(typeInfoSources, config.getAnnotationDescMatcher())
+            : null;
+        task.addTaskListener(new Listener(
+            task,
+            Paths.get(options.getDestinationDir()),
+            config,
+            classHierarchyIndex,
+            new PackageInfoIndex(typeInfoSources, config.getAnnotationDescMatcher())
+        ));
+    }
+
+
+    @RequiredArgsConstructor
+    private static class Listener implements TaskListener {
+
+        private final JavacTask task;
+
+        private final Path destinationDir;
+
+        private final ClassFileProcessorConfig config;
+
+        @Nullable
+        private final ClassHierarchyIndex classHierarchyIndex;
+
+        private final PackageInfoIndex packageInfoIndex;
+
+        @Override
+        public void started(TaskEvent event) {
+            // do nothing
+        }
+
+        @Override
+        public void finished(TaskEvent event) {
+            if (event.getKind() != GENERATE) {
+                return;
+            }
+
+            val typeElement = event.getTypeElement();
+            if (typeElement == null) {
+                return;
+            }
+
+            val binaryName = task.getElements().getBinaryName(typeElement).toString();
+            val classFilePath = destinationDir.resolve(binaryName.replace('.', '/') + ".class");
+            if (!isRegularFile(classFilePath)) {
+                // the class file was written to another location (for example, in multi-module mode)
+                return;
+            }
+
+            val metrics = new ProcessingMetrics();
+            ClassFileProcessor.builder()
+                .sourcePath(classFilePath)
+                .targetPath(classFilePath)
+                .config(config)
+                .classHierarchyIndex(classHierarchyIndex)
+                .packageInfoIndex(packageInfoIndex)
+                .metrics(metrics)
+                .build()
+                .process();
+
+            val warnings = metrics.getWarnings();
+            if (!warnings.isEmpty()) {
+                val trees = Trees.instance(task);
+                val classTree = trees.getTree(typeElement);
+                warnings.forEach(warning ->
+                    trees.printMessage(WARNING, warning, classTree, event.getCompilationUnit())
+                );
+            }
+        }
+
+    }
+
+}
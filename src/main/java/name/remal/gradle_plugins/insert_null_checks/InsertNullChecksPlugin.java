@@ -1,26 +1,69 @@
 package name.remal.gradle_plugins.insert_null_checks;
 
+import static java.lang.Boolean.FALSE;
+import static java.lang.Boolean.TRUE;
 import static java.util.Arrays.stream;
+import static java.util.Collections.emptyList;
 import static java.util.stream.Collectors.toList;
+import static name.remal.gradle_plugins.insert_null_checks.JavacPluginArgumentProvider.getJavacPluginClasspath;
 import static name.remal.gradle_plugins.toolkit.ObjectUtils.doNotInline;
+import static name.remal.gradle_plugins.toolkit.SourceSetUtils.isCompiledBy;
 import static name.remal.gradle_plugins.toolkit.SourceSetUtils.whenTestSourceSetRegistered;
 import static name.remal.gradle_plugins.toolkit.reflection.MethodsInvoker.invokeMethod;
 
+import java.io.File;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import lombok.SneakyThrows;
 import lombok.val;
 import name.remal.gradle_plugins.toolkit.reflection.ReflectionUtils;
+import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.plugins.JavaBasePlugin;
+import org.gradle.api.plugins.JavaPluginExtension;
 import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.SourceSet;
 import org.gradle.api.tasks.compile.AbstractCompile;
+import org.gradle.api.tasks.compile.JavaCompile;
 
 public abstract class InsertNullChecksPlugin implements Plugin<Project> {
 
     public static final String INSERT_NULL_CHECKS_EXTENSION_NAME = doNotInline("insertNullChecks");
 
+    public static final String INSERT_NULL_CHECKS_TASK_NAME_PREFIX = doNotInline("insertNullChecks");
+
+    public static final String INSERT_NULL_CHECKS_BUILD_SERVICE_NAME = doNotInline("insertNullChecks");
+
+    /**
+     * Gradle property that limits the number of tasks processing class files at the same time in the whole build.
+     */
+    public static final String MAX_PARALLEL_USAGES_PROPERTY_NAME =
+        doNotInline("name.remal.insert-null-checks.max-parallel-usages");
+
+    /**
+     * Gradle property that limits the number of class files processed at the same time in the whole build.
+     * By default, it's the number of available processors.
+     */
+    public static final String MAX_WORKERS_PROPERTY_NAME =
+        doNotInline("name.remal.insert-null-checks.max-workers");
+
+    /**
+     * Gradle property that limits the total size in bytes of class files processed at the same time
+     * in the whole build. By default, it's 1/8 of the max heap size of the Gradle daemon.
+     */
+    public static final String MAX_IN_FLIGHT_BYTES_PROPERTY_NAME =
+        doNotInline("name.remal.insert-null-checks.max-in-flight-bytes");
+
+    private static final String REPORTS_DIR_NAME = "reports/insert-null-checks";
+
+    private static final String OUTPUT_CACHE_DIR_NAME = "caches/insert-null-checks/outputs";
+
     @Override
     @SneakyThrows
     public void apply(Project project) {
@@ -28,9 +71,41 @@ public abstract class InsertNullChecksPlugin implements Plugin<Project> {
             INSERT_NULL_CHECKS_EXTENSION_NAME,
             InsertNullChecksExtension.class
         );
+        extension.getOutputCacheDirectory().convention(project.getLayout().dir(project.provider(() ->
+            new File(project.getGradle().getGradleUserHomeDir(), OUTPUT_CACHE_DIR_NAME)
+        )));
+
+
+        val buildService = project.getGradle().getSharedServices().registerIfAbsent(
+            INSERT_NULL_CHECKS_BUILD_SERVICE_NAME,
+            InsertNullChecksBuildService.class,
+            spec -> {
+                val maxParallelUsages = project.getProviders().gradleProperty(MAX_PARALLEL_USAGES_PROPERTY_NAME)
+                    .map(Integer::parseInt)
+                    .getOrNull();
+                if (maxParallelUsages != null) {
+                    spec.getMaxParallelUsages().set(maxParallelUsages);
+                }
+
+                spec.getParameters().getMaxWorkers().set(
+                    project.getProviders().gradleProperty(MAX_WORKERS_PROPERTY_NAME)
+                        .map(Integer::parseInt)
+                        .orElse(Runtime.getRuntime().availableProcessors())
+                );
+                spec.getParameters().getMaxInFlightBytes().set(
+                    project.getProviders().gradleProperty(MAX_IN_FLIGHT_BYTES_PROPERTY_NAME)
+                        .map(Long::parseLong)
+                        .orElse(Runtime.getRuntime().maxMemory() / 8)
+                );
+            }
+        );
 
 
         val processingAction = project.getObjects().newInstance(ClassFileProcessorAction.class);
+        processingAction.getBuildService().value(buildService).finalizeValue();
+        processingAction.getReportsDirectory()
+            .value(project.getLayout().getBuildDirectory().dir(REPORTS_DIR_NAME))
+            .finalizeValueOnRead();
 
         List<SourceSet> testSourceSets = new ArrayList<>();
         whenTestSourceSetRegistered(project, testSourceSets::add);
@@ -44,17 +119,143 @@ public abstract class InsertNullChecksPlugin implements Plugin<Project> {
         if (propertyMethods.isEmpty()) {
             throw new AssertionError("No property methods found in " + InsertNullChecksProperties.class);
         }
+        Map<String, Provider<?>> inputProperties = new LinkedHashMap<>();
         for (val method : propertyMethods) {
-            val sourceProperty = method.invoke(extension);
-            val targetProperty = method.invoke(processingAction);
-            invokeMethod(targetProperty, "value", Provider.class, (Provider<?>) sourceProperty);
-            invokeMethod(targetProperty, "finalizeValueOnRead");
+            if (method.isAnnotationPresent(Input.class)) {
+                inputProperties.put(
+                    INSERT_NULL_CHECKS_EXTENSION_NAME + '.' + getPropertyName(method),
+                    (Provider<?>) method.invoke(extension)
+                );
+            }
         }
+        bindProperties(propertyMethods, extension, processingAction);
 
 
         project.getTasks().withType(AbstractCompile.class).configureEach(task -> {
+            // processing result depends on these properties, so changing them must lead to a full recompilation:
+            inputProperties.forEach(task.getInputs()::property);
+
+            task.usesService(buildService);
             task.doLast(processingAction);
+            task.getOutputs().file(processingAction.getReportFile(task))
+                .withPropertyName("insertNullChecksReport");
+        });
+
+        project.getTasks().withType(JavaCompile.class).configureEach(task -> {
+            val argumentProvider = project.getObjects().newInstance(JavacPluginArgumentProvider.class);
+            bindProperties(propertyMethods, extension, argumentProvider);
+            argumentProvider.getDestinationDirectory().value(task.getDestinationDirectory()).finalizeValueOnRead();
+            argumentProvider.getEnabled().value(project.provider(() -> {
+                if (!TRUE.equals(extension.getUseJavacPlugin().get())
+                    || TRUE.equals(extension.getUseDedicatedTasks().get())
+                ) {
+                    return false;
+                }
+
+                if (FALSE.equals(extension.getIncludeTestCode().get())) {
+                    return testSourceSets.stream().noneMatch(sourceSet -> isCompiledBy(sourceSet, task));
+                }
+
+                return true;
+            })).finalizeValueOnRead();
+            task.getOptions().getCompilerArgumentProviders().add(argumentProvider);
+        });
+
+
+        project.getTasks().withType(InsertNullChecksArchive.class).configureEach(task -> {
+            setPropertyConventions(propertyMethods, extension, task);
+            task.getIncludedPackages().convention(emptyList());
+            task.getDestinationFile().convention(project.getLayout().getBuildDirectory()
+                .dir("archives-with-null-checks/" + task.getName())
+                .flatMap(dir -> dir.file(task.getArchiveFile().map(file -> file.getAsFile().getName())))
+            );
+            task.getReportFile().convention(project.getLayout().getBuildDirectory().file(
+                REPORTS_DIR_NAME + '/' + task.getName() + ".json"
+            ));
+            task.getBuildService().value(buildService).finalizeValue();
+            task.usesService(buildService);
         });
+
+
+        project.afterEvaluate(__ -> {
+            if (TRUE.equals(extension.getUseJavacPlugin().get())
+                && !TRUE.equals(extension.getUseDedicatedTasks().get())
+            ) {
+                // registered after evaluation, so the annotation processor path is already set by the Java plugin
+                val javacPluginClasspath = getJavacPluginClasspath();
+                project.getTasks().withType(JavaCompile.class).configureEach(task -> {
+                    val options = task.getOptions();
+                    val annotationProcessorPath = options.getAnnotationProcessorPath();
+                    options.setAnnotationProcessorPath(annotationProcessorPath != null
+                        ? annotationProcessorPath.plus(project.files(javacPluginClasspath))
+                        : project.files(javacPluginClasspath)
+                    );
+                });
+            }
+
+            if (!TRUE.equals(extension.getUseDedicatedTasks().get())) {
+                return;
+            }
+
+            project.getPlugins().withType(JavaBasePlugin.class, ___ -> {
+                val sourceSets = project.getExtensions().getByType(JavaPluginExtension.class).getSourceSets();
+                sourceSets.all(sourceSet -> {
+                    val classesDirs = sourceSet.getOutput().getClassesDirs();
+                    if (!(classesDirs instanceof ConfigurableFileCollection)) {
+                        throw new GradleException("Classes dirs of " + sourceSet + " are not configurable");
+                    }
+                    val configurableClassesDirs = (ConfigurableFileCollection) classesDirs;
+                    val compiledClassesDirs = project.files(new ArrayList<>(configurableClassesDirs.getFrom()));
+
+                    val taskProvider = project.getTasks().register(
+                        sourceSet.getTaskName(INSERT_NULL_CHECKS_TASK_NAME_PREFIX, null),
+                        InsertNullChecks.class,
+                        task -> {
+                            bindProperties(propertyMethods, extension, task);
+                            task.getReportFile().set(project.getLayout().getBuildDirectory().file(
+                                REPORTS_DIR_NAME + '/' + task.getName() + ".json"
+                            ));
+                            task.getBuildService().value(buildService).finalizeValue();
+                            task.usesService(buildService);
+                            task.getClassesDirs().from(compiledClassesDirs);
+                            task.getClasspath().from(sourceSet.getCompileClasspath());
+                            task.getDestinationDirectory().set(project.getLayout().getBuildDirectory().dir(
+                                "classes-with-null-checks/" + sourceSet.getName()
+                            ));
+                            task.getTestSourceSet().set(project.provider(() ->
+                                testSourceSets.contains(sourceSet)
+                            ));
+                        }
+                    );
+
+                    configurableClassesDirs.setFrom(taskProvider.flatMap(InsertNullChecks::getDestinationDirectory));
+                });
+            });
+        });
+    }
+
+    @SneakyThrows
+    private static void bindProperties(List<Method> propertyMethods, Object source, Object target) {
+        for (val method : propertyMethods) {
+            val sourceProperty = method.invoke(source);
+            val targetProperty = method.invoke(target);
+            invokeMethod(targetProperty, "value", Provider.class, (Provider<?>) sourceProperty);
+            invokeMethod(targetProperty, "finalizeValueOnRead");
+        }
+    }
+
+    @SneakyThrows
+    private static void setPropertyConventions(List<Method> propertyMethods, Object source, Object target) {
+        for (val method : propertyMethods) {
+            val sourceProperty = method.invoke(source);
+            val targetProperty = method.invoke(target);
+            invokeMethod(targetProperty, "convention", Provider.class, (Provider<?>) sourceProperty);
+        }
+    }
+
+    private static String getPropertyName(Method getter) {
+        val name = getter.getName().substring("get".length());
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
     }
 
 }
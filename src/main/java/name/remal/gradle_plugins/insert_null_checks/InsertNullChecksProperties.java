@@ -1,27 +1,176 @@
 package name.remal.gradle_plugins.insert_null_checks;
 
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.provider.SetProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
 
 interface InsertNullChecksProperties {
 
     default void test() {
     }
 
+    @Input
     Property<Boolean> getIncludeTestCode();
 
+    @Input
     Property<Boolean> getIncludeGeneratedCode();
 
+    @Input
     Property<Boolean> getIncludePrivateMethods();
 
+    /**
+     * If enabled, stack map frames and max values are computed only for methods with inserted null checks,
+     * and other methods are copied as is.
+     *
+     * <p>Otherwise, frames are recomputed for all methods of a changed class,
+     * which requires loading classes of the compile classpath.
+     */
+    @Input
+    Property<Boolean> getPreserveStackMapFrames();
+
+    /**
+     * If enabled, classes are not processed if their supertypes are annotated with validation annotations,
+     * and methods are not processed if overridden methods are annotated with validation annotations.
+     *
+     * <p>Supertypes are searched in compiled classes of the task and in its compile classpath.
+     */
+    @Input
+    Property<Boolean> getCheckInheritedValidationAnnotations();
+
+    @Input
+    Property<NullCheckStrategy> getNullCheckStrategy();
+
+    /**
+     * Bytecode size threshold of methods that can be inlined by JIT compiler.
+     * The default value is the default value of HotSpot's {@code -XX:MaxInlineSize} option.
+     *
+     * <p>If null checks make a method larger than this threshold, it's logged at info level and listed in the report
+     * (or the method is skipped, if {@link #getSkipMethodsExceedingInliningThreshold()} is enabled).
+     * The number of such methods is logged as a single warning, that refers to the report.
+     * Sizes of methods are not checked if the value is not positive.
+     */
+    @Input
+    Property<Integer> getInliningThreshold();
+
+    @Input
+    Property<Boolean> getSkipMethodsExceedingInliningThreshold();
+
+    /**
+     * If set, all inserted null checks of a class are guarded by a synthetic {@code static final boolean} field,
+     * that is initialized by {@link Boolean#getBoolean(String)} with this system property name.
+     *
+     * <p>So, checks can be disabled at runtime with {@code -D<name>=true} JVM option.
+     * JIT compilers treat the field as a constant and remove disabled checks from compiled code completely.
+     *
+     * <p>The field is initialized in the static initializer. If a class doesn't have one, it's added,
+     * and the default {@code serialVersionUID} of the class is declared explicitly, so serialization is not affected.
+     * Fields of interfaces are public and inherited, so checks of interfaces read the system property every time.
+     */
+    @Input
+    @Optional
+    Property<String> getKillSwitchSystemPropertyName();
+
+    /**
+     * If enabled, parameters are not checked if a method checks them itself
+     * (for example, with {@code Objects.requireNonNull()}, or with Lombok's {@code @NonNull}),
+     * or dereferences them before doing anything else.
+     *
+     * <p>Only the beginning of a method is analyzed, see {@link NullCheckedParametersScanner}.
+     */
+    @Input
+    Property<Boolean> getEliminateRedundantChecks();
+
+    /**
+     * If enabled, only classes of packages annotated with {@link #getNonNullByDefaultAnnotationClassNames()}
+     * (like {@code @NullMarked} in {@code package-info.java}) are processed,
+     * as well as classes annotated with these annotations themselves.
+     * Annotations of outer classes are not taken into account.
+     *
+     * <p>Otherwise, parameters without nullable annotations are considered non-null in all classes.
+     */
+    @Input
+    Property<Boolean> getNonNullByDefaultCodeOnly();
+
+    @Input
     SetProperty<String> getExclusionAnnotationClassNames();
 
+    @Input
     SetProperty<String> getValidationAnnotationClassNames();
 
+    @Input
     SetProperty<String> getValidationAnnotationBasePackages();
 
+    @Input
     SetProperty<String> getNonNullAnnotationClassNames();
 
+    @Input
+    SetProperty<String> getNonNullByDefaultAnnotationClassNames();
+
+    @Input
     SetProperty<String> getNullableAnnotationSimpleClassNames();
 
+    /**
+     * If enabled, nullability contracts of classes are written to {@code META-INF/insert-null-checks.idx}
+     * next to processed class files (or into the processed archive).
+     * Downstream builds read this index instead of parsing class files of the dependency,
+     * if {@link #getCheckInheritedValidationAnnotations()} is enabled there.
+     *
+     * <p>It's not supported by {@link #getUseJavacPlugin()}.
+     */
+    @Input
+    Property<Boolean> getWriteContractIndex();
+
+    /**
+     * Max number of threads used to process class files of a single task.
+     * Class files are processed sequentially if the value is less than 2.
+     */
+    @Internal
+    Property<Integer> getParallelism();
+
+    /**
+     * If enabled, results of processing are stored in {@link #getOutputCacheDirectory()},
+     * so a class file that has already been processed with the same configuration is not parsed again.
+     *
+     * <p>It's useful for class files that are recompiled without changes,
+     * for example, after switching between branches, or after a clean build.
+     * The cache is not used if {@link #getCheckInheritedValidationAnnotations()} is enabled.
+     */
+    @Internal
+    Property<Boolean> getUseOutputCache();
+
+    /**
+     * Directory of the output cache. By default, it's located in Gradle user home directory,
+     * so the cache is shared by all projects of the machine.
+     */
+    @Internal
+    DirectoryProperty getOutputCacheDirectory();
+
+    /**
+     * Max total size of the output cache in bytes.
+     * Least recently used entries are deleted at the end of a build, if the cache becomes larger.
+     */
+    @Internal
+    Property<Long> getOutputCacheMaxSize();
+
+    /**
+     * If enabled, class files are processed by a separate cacheable {@link InsertNullChecks} task per source set
+     * instead of a {@code doLast} action of compile tasks.
+     *
+     * <p>It's an input of compile tasks, as their outputs contain null checks only if it's disabled.
+     */
+    @Input
+    Property<Boolean> getUseDedicatedTasks();
+
+    /**
+     * If enabled, classes compiled by {@code JavaCompile} tasks are processed by {@link InsertNullChecksJavacPlugin}
+     * inside of the compiler, right after they are generated, instead of a {@code doLast} action.
+     *
+     * <p>It's ignored if {@link #getUseDedicatedTasks()} is enabled.
+     */
+    @Internal
+    Property<Boolean> getUseJavacPlugin();
+
 }
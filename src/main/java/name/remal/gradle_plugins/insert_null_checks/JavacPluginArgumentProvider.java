@@ -0,0 +1,89 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Boolean.TRUE;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.toolkit.InTestFlags;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.process.CommandLineArgumentProvider;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+/**
+ * Enables {@link InsertNullChecksJavacPlugin} for a {@code JavaCompile} task.
+ */
+abstract class JavacPluginArgumentProvider implements CommandLineArgumentProvider, InsertNullChecksProperties {
+
+    /**
+     * Returns JAR files (or directories) that have to be added to the annotation processor path,
+     * so the compiler can load {@link InsertNullChecksJavacPlugin}.
+     */
+    public static Set<File> getJavacPluginClasspath() {
+        Set<File> files = new LinkedHashSet<>();
+        files.add(getCodeSourceFile(InsertNullChecksJavacPlugin.class));
+        files.add(getCodeSourceFile(ClassReader.class));
+        files.add(getCodeSourceFile(ClassNode.class));
+        files.add(getCodeSourceFile(InTestFlags.class));
+        return files;
+    }
+
+    @SneakyThrows
+    private static File getCodeSourceFile(Class<?> clazz) {
+        val codeSource = clazz.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            throw new IllegalStateException("Code source location can't be determined for " + clazz);
+        }
+        return new File(codeSource.getLocation().toURI());
+    }
+
+
+    /**
+     * If disabled, no compiler arguments are provided.
+     */
+    @Input
+    public abstract Property<Boolean> getEnabled();
+
+    @Internal
+    public abstract DirectoryProperty getDestinationDirectory();
+
+    @Override
+    public Iterable<String> asArguments() {
+        if (!TRUE.equals(getEnabled().get())) {
+            return emptyList();
+        }
+
+        val options = JavacPluginOptions.builder()
+            .destinationDir(getDestinationDirectory().get().getAsFile().getAbsolutePath())
+            .includeGeneratedCode(TRUE.equals(getIncludeGeneratedCode().get()))
+            .includePrivateMethods(TRUE.equals(getIncludePrivateMethods().get()))
+            .preserveStackMapFrames(TRUE.equals(getPreserveStackMapFrames().get()))
+            .checkInheritedValidationAnnotations(TRUE.equals(getCheckInheritedValidationAnnotations().get()))
+            .nullCheckStrategy(getNullCheckStrategy().get())
+            .inliningThreshold(getInliningThreshold().get())
+            .skipMethodsExceedingInliningThreshold(TRUE.equals(getSkipMethodsExceedingInliningThreshold().get()))
+            .killSwitchSystemPropertyName(getKillSwitchSystemPropertyName().getOrNull())
+            .eliminateRedundantChecks(TRUE.equals(getEliminateRedundantChecks().get()))
+            .nonNullByDefaultCodeOnly(TRUE.equals(getNonNullByDefaultCodeOnly().get()))
+            .exclusionAnnotationClassNames(getExclusionAnnotationClassNames().get())
+            .validationAnnotationClassNames(getValidationAnnotationClassNames().get())
+            .validationAnnotationBasePackages(getValidationAnnotationBasePackages().get())
+            .nonNullAnnotationClassNames(getNonNullAnnotationClassNames().get())
+            .nonNullByDefaultAnnotationClassNames(getNonNullByDefaultAnnotationClassNames().get())
+            .nullableAnnotationSimpleClassNames(getNullableAnnotationSimpleClassNames().get())
+            .build();
+
+        List<String> pluginArgs = options.toPluginArgs();
+        return singletonList("-Xplugin:" + InsertNullChecksJavacPlugin.NAME + ' ' + String.join(" ", pluginArgs));
+    }
+
+}
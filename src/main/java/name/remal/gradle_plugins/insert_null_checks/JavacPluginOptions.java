@@ -0,0 +1,209 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Collections.emptyList;
+import static java.util.stream.Collectors.joining;
+import static java.util.stream.Collectors.toList;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Settings passed from the Gradle plugin to {@link InsertNullChecksJavacPlugin} as plugin arguments.
+ *
+ * <p>javac splits plugin arguments by whitespaces, so every value is URL-encoded.
+ */
+@Value
+@Builder
+class JavacPluginOptions {
+
+    private static final String CHARSET_NAME = "UTF-8";
+
+
+    @NonNull
+    String destinationDir;
+
+    boolean includeGeneratedCode;
+
+    boolean includePrivateMethods;
+
+    boolean preserveStackMapFrames;
+
+    boolean checkInheritedValidationAnnotations;
+
+    @NonNull
+    NullCheckStrategy nullCheckStrategy;
+
+    int inliningThreshold;
+
+    boolean skipMethodsExceedingInliningThreshold;
+
+    @Nullable
+    String killSwitchSystemPropertyName;
+
+    boolean eliminateRedundantChecks;
+
+    boolean nonNullByDefaultCodeOnly;
+
+    @NonNull
+    Collection<String> exclusionAnnotationClassNames;
+
+    @NonNull
+    Collection<String> validationAnnotationClassNames;
+
+    @NonNull
+    Collection<String> validationAnnotationBasePackages;
+
+    @NonNull
+    Collection<String> nonNullAnnotationClassNames;
+
+    @NonNull
+    Collection<String> nonNullByDefaultAnnotationClassNames;
+
+    @NonNull
+    Collection<String> nullableAnnotationSimpleClassNames;
+
+
+    public List<String> toPluginArgs() {
+        Map<String, String> args = new LinkedHashMap<>();
+        args.put("destinationDir", encode(destinationDir));
+        args.put("includeGeneratedCode", String.valueOf(includeGeneratedCode));
+        args.put("includePrivateMethods", String.valueOf(includePrivateMethods));
+        args.put("preserveStackMapFrames", String.valueOf(preserveStackMapFrames));
+        args.put("checkInheritedValidationAnnotations", String.valueOf(checkInheritedValidationAnnotations));
+        args.put("nullCheckStrategy", nullCheckStrategy.name());
+        args.put("inliningThreshold", String.valueOf(inliningThreshold));
+        args.put("skipMethodsExceedingInliningThreshold", String.valueOf(skipMethodsExceedingInliningThreshold));
+        args.put("eliminateRedundantChecks", String.valueOf(eliminateRedundantChecks));
+        args.put("nonNullByDefaultCodeOnly", String.valueOf(nonNullByDefaultCodeOnly));
+        if (killSwitchSystemPropertyName != null) {
+            args.put("killSwitchSystemPropertyName", encode(killSwitchSystemPropertyName));
+        }
+        args.put("exclusionAnnotationClassNames", encode(exclusionAnnotationClassNames));
+        args.put("validationAnnotationClassNames", encode(validationAnnotationClassNames));
+        args.put("validationAnnotationBasePackages", encode(validationAnnotationBasePackages));
+        args.put("nonNullAnnotationClassNames", encode(nonNullAnnotationClassNames));
+        args.put("nonNullByDefaultAnnotationClassNames", encode(nonNullByDefaultAnnotationClassNames));
+        args.put("nullableAnnotationSimpleClassNames", encode(nullableAnnotationSimpleClassNames));
+        return args.entrySet().stream()
+            .map(entry -> entry.getKey() + '=' + entry.getValue())
+            .collect(toList());
+    }
+
+    public static JavacPluginOptions parsePluginArgs(String... args) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (val arg : args) {
+            val separatorPos = arg.indexOf('=');
+            if (separatorPos <= 0) {
+                throw new IllegalArgumentException("Invalid plugin argument: " + arg);
+            }
+            values.put(arg.substring(0, separatorPos), arg.substring(separatorPos + 1));
+        }
+
+        return builder()
+            .destinationDir(decode(getRequired(values, "destinationDir")))
+            .includeGeneratedCode(Boolean.parseBoolean(getRequired(values, "includeGeneratedCode")))
+            .includePrivateMethods(Boolean.parseBoolean(getRequired(values, "includePrivateMethods")))
+            .preserveStackMapFrames(Boolean.parseBoolean(getRequired(values, "preserveStackMapFrames")))
+            .checkInheritedValidationAnnotations(Boolean.parseBoolean(
+                getRequired(values, "checkInheritedValidationAnnotations")
+            ))
+            .nullCheckStrategy(NullCheckStrategy.valueOf(getRequired(values, "nullCheckStrategy")))
+            .inliningThreshold(Integer.parseInt(getRequired(values, "inliningThreshold")))
+            .skipMethodsExceedingInliningThreshold(Boolean.parseBoolean(
+                getRequired(values, "skipMethodsExceedingInliningThreshold")
+            ))
+            .killSwitchSystemPropertyName(getOptional(values, "killSwitchSystemPropertyName"))
+            .eliminateRedundantChecks(Boolean.parseBoolean(getRequired(values, "eliminateRedundantChecks")))
+            .nonNullByDefaultCodeOnly(Boolean.parseBoolean(getRequired(values, "nonNullByDefaultCodeOnly")))
+            .exclusionAnnotationClassNames(decodeList(getRequired(values, "exclusionAnnotationClassNames")))
+            .validationAnnotationClassNames(decodeList(getRequired(values, "validationAnnotationClassNames")))
+            .validationAnnotationBasePackages(decodeList(getRequired(values, "validationAnnotationBasePackages")))
+            .nonNullAnnotationClassNames(decodeList(getRequired(values, "nonNullAnnotationClassNames")))
+            .nonNullByDefaultAnnotationClassNames(decodeList(
+                getRequired(values, "nonNullByDefaultAnnotationClassNames")
+            ))
+            .nullableAnnotationSimpleClassNames(decodeList(getRequired(values, "nullableAnnotationSimpleClassNames")))
+            .build();
+    }
+
+    public ClassFileProcessorConfig toConfig() {
+        return ClassFileProcessorConfig.builder()
+            .includeGeneratedCode(includeGeneratedCode)
+            .includePrivateMethods(includePrivateMethods)
+            .preserveStackMapFrames(preserveStackMapFrames)
+            .checkInheritedValidationAnnotations(checkInheritedValidationAnnotations)
+            .nullCheckStrategy(nullCheckStrategy)
+            .inliningThreshold(inliningThreshold)
+            .skipMethodsExceedingInliningThreshold(skipMethodsExceedingInliningThreshold)
+            .killSwitchSystemPropertyName(killSwitchSystemPropertyName)
+            .eliminateRedundantChecks(eliminateRedundantChecks)
+            .nonNullByDefaultCodeOnly(nonNullByDefaultCodeOnly)
+            .annotationDescMatcher(newAnnotationDescMatcher(
+                exclusionAnnotationClassNames,
+                validationAnnotationClassNames,
+                validationAnnotationBasePackages,
+                nonNullAnnotationClassNames,
+                nonNullByDefaultAnnotationClassNames,
+                nullableAnnotationSimpleClassNames
+            ))
+            // class files aren't tracked by a manifest in this mode, so the arguments identify the settings:
+            .fingerprint(String.join(" ", toPluginArgs()))
+            .build();
+    }
+
+
+    private static String getRequired(Map<String, String> values, String name) {
+        val value = values.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Plugin argument is missing: " + name);
+        }
+        return value;
+    }
+
+    @Nullable
+    private static String getOptional(Map<String, String> values, String name) {
+        val value = values.get(name);
+        return value != null ? decode(value) : null;
+    }
+
+    @SneakyThrows
+    private static String encode(String value) {
+        return URLEncoder.encode(value, CHARSET_NAME);
+    }
+
+    private static String encode(Collection<String> values) {
+        // sorted, so the same values always lead to the same compiler arguments
+        return new TreeSet<>(values).stream()
+            .map(JavacPluginOptions::encode)
+            .collect(joining(","));
+    }
+
+    @SneakyThrows
+    private static String decode(String value) {
+        return URLDecoder.decode(value, CHARSET_NAME);
+    }
+
+    private static List<String> decodeList(String value) {
+        if (value.isEmpty()) {
+            return emptyList();
+        }
+
+        return Stream.of(value.split(","))
+            .map(JavacPluginOptions::decode)
+            .collect(toList());
+    }
+
+}
@@ -0,0 +1,36 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+/**
+ * Bytecode sequence that is inserted for every checked parameter.
+ */
+public enum NullCheckStrategy {
+
+    /**
+     * {@code if (param == null) throw new NullPointerException("param must not be null");}
+     *
+     * <p>It takes 14 bytes of bytecode per parameter, but doesn't call any other methods.
+     */
+    INLINE_THROW,
+
+    /**
+     * {@code java.util.Objects.requireNonNull(param, "param must not be null");}
+     *
+     * <p>It takes 7 bytes of bytecode per parameter and doesn't require stack map frames.
+     * Classes compiled for Java 6 or earlier are processed with {@link #INLINE_THROW},
+     * as {@code Objects} class is not available there.
+     */
+    REQUIRE_NON_NULL,
+
+    /**
+     * {@code if (param == null) throw $insertNullChecks$nullParameter(paramNameId);}
+     *
+     * <p>A private static synthetic method is added to every processed class.
+     * It builds the exception message only if a check fails, so only {@code ALOAD; IFNONNULL} is executed
+     * if the parameter is not null. It takes 9 bytes of bytecode per parameter (up to 6 different parameter names).
+     *
+     * <p>Interfaces compiled for Java 8 or earlier are processed with {@link #INLINE_THROW},
+     * as private interface methods are not supported there.
+     */
+    THROW_HELPER,
+
+}
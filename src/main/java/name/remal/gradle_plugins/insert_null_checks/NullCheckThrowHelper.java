@@ -0,0 +1,154 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ARETURN;
+import static org.objectweb.asm.Opcodes.DUP_X1;
+import static org.objectweb.asm.Opcodes.F_SAME;
+import static org.objectweb.asm.Opcodes.F_SAME1;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.NEW;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Type.getInternalName;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import lombok.val;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.InsnNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TableSwitchInsnNode;
+import org.objectweb.asm.tree.TypeInsnNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Private static synthetic method of a processed class that creates {@link NullPointerException}-s
+ * for {@link NullCheckStrategy#THROW_HELPER}.
+ *
+ * <p>Instrumented methods pass an ID of a parameter name, so a message is built only if a check fails.
+ * Not thread-safe, a new instance is used for every processed class.
+ */
+class NullCheckThrowHelper {
+
+    public static final String THROW_HELPER_DESC = "(I)Ljava/lang/NullPointerException;";
+
+    private static final String METHOD_NAME = "$insertNullChecks$nullParameter";
+
+    private static final String NPE_INTERNAL_NAME = getInternalName(NullPointerException.class);
+
+    private static final String STRING_INTERNAL_NAME = getInternalName(String.class);
+
+
+    private final Map<String, Integer> paramNameIds = new LinkedHashMap<>();
+
+    @Nullable
+    private String methodName;
+
+    public int getParamNameId(String paramName) {
+        val id = paramNameIds.get(paramName);
+        if (id != null) {
+            return id;
+        }
+
+        val newId = paramNameIds.size();
+        paramNameIds.put(paramName, newId);
+        return newId;
+    }
+
+    public String getMethodName(ClassNode classNode) {
+        if (methodName == null) {
+            String name = METHOD_NAME;
+            for (int suffix = 2; hasMethod(classNode, name); ++suffix) {
+                name = METHOD_NAME + suffix;
+            }
+            methodName = name;
+        }
+        return methodName;
+    }
+
+    private static boolean hasMethod(ClassNode classNode, String name) {
+        return classNode.methods.stream()
+            .anyMatch(methodNode -> methodNode.name.equals(name) && methodNode.desc.equals(THROW_HELPER_DESC));
+    }
+
+    public boolean isUsed() {
+        return methodName != null && !paramNameIds.isEmpty();
+    }
+
+    /**
+     * Creates the helper method.
+     *
+     * <p>The code is equivalent to {@code return new NullPointerException(paramNames[id] + " must not be null");},
+     * where {@code paramNames} is a {@code switch} by constants.
+     */
+    public MethodNode createMethod(boolean withFrames) {
+        if (methodName == null) {
+            throw new IllegalStateException("Helper method is not used");
+        }
+
+        val methodNode = new MethodNode(
+            ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC,
+            methodName,
+            THROW_HELPER_DESC,
+            null,
+            null
+        );
+        val insns = methodNode.instructions;
+
+        val caseLabels = new LabelNode[paramNameIds.size()];
+        for (int i = 0; i < caseLabels.length; ++i) {
+            caseLabels[i] = new LabelNode();
+        }
+        val defaultLabel = new LabelNode();
+        val createLabel = new LabelNode();
+
+        insns.add(new VarInsnNode(ILOAD, 0));
+        insns.add(new TableSwitchInsnNode(0, caseLabels.length - 1, defaultLabel, caseLabels));
+        for (val entry : paramNameIds.entrySet()) {
+            insns.add(caseLabels[entry.getValue()]);
+            if (withFrames) {
+                insns.add(new FrameNode(F_SAME, 0, null, 0, null));
+            }
+            insns.add(new LdcInsnNode(entry.getKey()));
+            insns.add(new JumpInsnNode(GOTO, createLabel));
+        }
+
+        insns.add(defaultLabel);
+        if (withFrames) {
+            insns.add(new FrameNode(F_SAME, 0, null, 0, null));
+        }
+        insns.add(new LdcInsnNode("parameter"));
+
+        insns.add(createLabel);
+        if (withFrames) {
+            insns.add(new FrameNode(F_SAME1, 0, null, 1, new Object[]{STRING_INTERNAL_NAME}));
+        }
+        insns.add(new LdcInsnNode(" must not be null"));
+        insns.add(new MethodInsnNode(
+            INVOKEVIRTUAL,
+            STRING_INTERNAL_NAME,
+            "concat",
+            "(Ljava/lang/String;)Ljava/lang/String;"
+        ));
+        insns.add(new TypeInsnNode(NEW, NPE_INTERNAL_NAME));
+        insns.add(new InsnNode(DUP_X1));
+        insns.add(new InsnNode(SWAP));
+        insns.add(new MethodInsnNode(INVOKESPECIAL, NPE_INTERNAL_NAME, "<init>", "(Ljava/lang/String;)V"));
+        insns.add(new InsnNode(ARETURN));
+
+        methodNode.maxStack = 3;
+        methodNode.maxLocals = 1;
+        return methodNode;
+    }
+
+}
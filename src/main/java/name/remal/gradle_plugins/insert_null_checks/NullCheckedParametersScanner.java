@@ -0,0 +1,349 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessor.getParameterVarIndex;
+import static name.remal.gradle_plugins.insert_null_checks.NullChecksKillSwitch.isKillSwitchField;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IFNONNULL;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.MONITORENTER;
+import static org.objectweb.asm.Opcodes.POP;
+import static org.objectweb.asm.Opcodes.SALOAD;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Type.getArgumentTypes;
+import static org.objectweb.asm.Type.getReturnType;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.NoArgsConstructor;
+import lombok.val;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FrameNode;
+import org.objectweb.asm.tree.JumpInsnNode;
+import org.objectweb.asm.tree.LabelNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Finds parameters that are already checked for null, or dereferenced, at the beginning of a method.
+ *
+ * <p>Only a linear prefix of the method is scanned, until the first instruction with a side effect
+ * (like a method invocation or a field assignment), the first branch, or the first try-catch block.
+ * So, if a parameter found by this scanner is null, a {@link NullPointerException} is thrown
+ * before the method does anything observable, the same way as an inserted null check would do.
+ *
+ * <p>These patterns are recognized:
+ * <ul>
+ *     <li>{@code Objects.requireNonNull(param, ...)} and Guava's {@code Preconditions.checkNotNull(param, ...)}
+ *     <li>{@code if (param == null) throw ...} (this is how Lombok's {@code @NonNull} is implemented)
+ *     <li>{@code param.field}, {@code param.method(...)}, {@code param.length}, {@code param[index]},
+ *     and {@code synchronized (param)}
+ * </ul>
+ *
+ * <p>The guard of null checks inserted with a kill switch (see {@link NullChecksKillSwitch}) is skipped,
+ * so the checks are found, even though they can be disabled at runtime. A guard that reads a system property
+ * is skipped only if it reads the configured kill switch property, as user code can read other properties.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class NullCheckedParametersScanner {
+
+    /**
+     * A stack value that is not a parameter.
+     */
+    private static final int OTHER_VALUE = -1;
+
+    private static final Map<String, String> CHECK_METHOD_NAMES = new HashMap<>();
+
+    static {
+        CHECK_METHOD_NAMES.put("java/util/Objects", "requireNonNull");
+        CHECK_METHOD_NAMES.put("com/google/common/base/Preconditions", "checkNotNull");
+    }
+
+
+    /**
+     * Returns indexes of parameters that can't be null after the scanned prefix of the method.
+     *
+     * @param killSwitchSystemPropertyName the system property that disables inserted checks, if configured
+     */
+    @SuppressWarnings({"java:S3776", "java:S1541"})
+    public static Set<Integer> findNullCheckedParameters(
+        MethodNode methodNode,
+        @Nullable String killSwitchSystemPropertyName
+    ) {
+        Set<Integer> checkedParamIndexes = new LinkedHashSet<>();
+        if (methodNode.instructions == null) {
+            return checkedParamIndexes;
+        }
+
+        val paramIndexesByVar = getReferenceParamIndexesByVar(methodNode);
+        val tryCatchLabels = getTryCatchLabels(methodNode);
+        Deque<Integer> stack = new ArrayDeque<>();
+        val firstInsn = skipKillSwitchGuard(methodNode.instructions.getFirst(), killSwitchSystemPropertyName);
+        for (AbstractInsnNode insn = firstInsn; insn != null; insn = insn.getNext()) {
+            if (insn instanceof LineNumberNode || insn instanceof FrameNode) {
+                continue;
+            }
+
+            if (insn instanceof LabelNode) {
+                if (tryCatchLabels.contains(insn)) {
+                    // a NullPointerException can be caught from here
+                    break;
+                }
+                continue;
+            }
+
+            val opcode = insn.getOpcode();
+            if (opcode == ALOAD) {
+                val paramIndex = paramIndexesByVar.get(((VarInsnNode) insn).var);
+                stack.push(paramIndex != null ? paramIndex : OTHER_VALUE);
+
+            } else if (opcode >= ILOAD && opcode < ALOAD) {
+                stack.push(OTHER_VALUE);
+
+            } else if ((opcode >= ACONST_NULL && opcode <= DCONST_1)
+                || opcode == BIPUSH
+                || opcode == SIPUSH
+                || insn.getType() == AbstractInsnNode.LDC_INSN
+            ) {
+                stack.push(OTHER_VALUE);
+
+            } else if (opcode >= ISTORE && opcode <= ISTORE + (ALOAD - ILOAD)) {
+                // the parameter is not in this variable anymore
+                paramIndexesByVar.remove(((VarInsnNode) insn).var);
+                if (pop(stack) == null) {
+                    break;
+                }
+
+            } else if (opcode == POP) {
+                if (pop(stack) == null) {
+                    break;
+                }
+
+            } else if (opcode == DUP) {
+                if (stack.isEmpty()) {
+                    break;
+                }
+                stack.push(stack.peek());
+
+            } else if (opcode == GETFIELD || opcode == ARRAYLENGTH) {
+                if (!dereference(stack, checkedParamIndexes)) {
+                    break;
+                }
+                stack.push(OTHER_VALUE);
+
+            } else if (opcode >= IALOAD && opcode <= SALOAD) {
+                if (pop(stack) == null || !dereference(stack, checkedParamIndexes)) {
+                    break;
+                }
+                stack.push(OTHER_VALUE);
+
+            } else if (opcode == MONITORENTER) {
+                dereference(stack, checkedParamIndexes);
+                // entering a monitor is a side effect
+                break;
+
+            } else if (opcode == INVOKEVIRTUAL || opcode == INVOKEINTERFACE || opcode == INVOKESPECIAL) {
+                val methodInsn = (MethodInsnNode) insn;
+                if (!methodInsn.name.equals("<init>")
+                    && popArguments(stack, methodInsn.desc)
+                ) {
+                    // the receiver is dereferenced before the method is invoked
+                    dereference(stack, checkedParamIndexes);
+                }
+                // invocation is a side effect
+                break;
+
+            } else if (opcode == INVOKESTATIC && isCheckMethod((MethodInsnNode) insn)) {
+                val methodInsn = (MethodInsnNode) insn;
+                val argumentTypes = getArgumentTypes(methodInsn.desc);
+                Integer checkedValue = null;
+                for (int i = argumentTypes.length - 1; i >= 0; --i) {
+                    checkedValue = pop(stack);
+                    if (checkedValue == null) {
+                        break;
+                    }
+                }
+                if (checkedValue == null) {
+                    break;
+                }
+                if (checkedValue != OTHER_VALUE) {
+                    checkedParamIndexes.add(checkedValue);
+                }
+                if (getReturnType(methodInsn.desc).getSort() != Type.VOID) {
+                    stack.push(checkedValue);
+                }
+
+            } else if (opcode == IFNONNULL) {
+                val value = pop(stack);
+                val afterThrowInsn = getInsnAfterThrowBlock((JumpInsnNode) insn);
+                if (value == null || afterThrowInsn == null) {
+                    break;
+                }
+                if (value != OTHER_VALUE) {
+                    checkedParamIndexes.add(value);
+                }
+                if (tryCatchLabels.contains(afterThrowInsn)) {
+                    break;
+                }
+                insn = afterThrowInsn;
+
+            } else {
+                break;
+            }
+        }
+
+        return checkedParamIndexes;
+    }
+
+    /**
+     * Matches {@code GETSTATIC <kill switch field>; IFNE label}, or {@code LDC <kill switch property>; INVOKESTATIC
+     * Boolean.getBoolean(); IFNE label} for interfaces, at the beginning of the method.
+     *
+     * @return the instruction after the guard, or the first instruction, if the method doesn't start with a guard
+     */
+    @Nullable
+    private static AbstractInsnNode skipKillSwitchGuard(
+        @Nullable AbstractInsnNode firstInsn,
+        @Nullable String killSwitchSystemPropertyName
+    ) {
+        AbstractInsnNode insn = firstInsn;
+        if (insn instanceof FieldInsnNode
+            && insn.getOpcode() == GETSTATIC
+            && isKillSwitchField(((FieldInsnNode) insn).name, ((FieldInsnNode) insn).desc)
+        ) {
+            insn = insn.getNext();
+        } else if (killSwitchSystemPropertyName != null
+            && insn instanceof LdcInsnNode
+            && killSwitchSystemPropertyName.equals(((LdcInsnNode) insn).cst)
+            && insn.getNext() instanceof MethodInsnNode
+            && isSystemPropertyRead((MethodInsnNode) insn.getNext())
+        ) {
+            insn = insn.getNext().getNext();
+        } else {
+            return firstInsn;
+        }
+
+        if (insn == null || insn.getOpcode() != IFNE) {
+            return firstInsn;
+        }
+        return insn.getNext();
+    }
+
+    private static boolean isSystemPropertyRead(MethodInsnNode methodInsn) {
+        return methodInsn.getOpcode() == INVOKESTATIC
+            && methodInsn.owner.equals("java/lang/Boolean")
+            && methodInsn.name.equals("getBoolean")
+            && methodInsn.desc.equals("(Ljava/lang/String;)Z");
+    }
+
+    private static Map<Integer, Integer> getReferenceParamIndexesByVar(MethodNode methodNode) {
+        Map<Integer, Integer> paramIndexesByVar = new HashMap<>();
+        val paramTypes = getArgumentTypes(methodNode.desc);
+        for (int paramIndex = 0; paramIndex < paramTypes.length; ++paramIndex) {
+            val sort = paramTypes[paramIndex].getSort();
+            if (sort == Type.OBJECT || sort == Type.ARRAY) {
+                paramIndexesByVar.put(getParameterVarIndex(methodNode, paramIndex), paramIndex);
+            }
+        }
+        return paramIndexesByVar;
+    }
+
+    private static Set<LabelNode> getTryCatchLabels(MethodNode methodNode) {
+        Set<LabelNode> labels = new HashSet<>();
+        if (methodNode.tryCatchBlocks != null) {
+            for (val tryCatchBlock : methodNode.tryCatchBlocks) {
+                labels.add(tryCatchBlock.start);
+                labels.add(tryCatchBlock.handler);
+            }
+        }
+        return labels;
+    }
+
+    private static boolean isCheckMethod(MethodInsnNode methodInsn) {
+        return methodInsn.name.equals(CHECK_METHOD_NAMES.get(methodInsn.owner))
+            && methodInsn.desc.startsWith("(Ljava/lang/Object;");
+    }
+
+    /**
+     * Matches {@code IFNONNULL label; <instructions without branches>; ATHROW; label:}.
+     * The throw block can build a message, as it's executed only if the value is null.
+     *
+     * @return the label after the throw block, or {@code null} if the pattern doesn't match
+     */
+    @Nullable
+    private static AbstractInsnNode getInsnAfterThrowBlock(JumpInsnNode jumpInsn) {
+        AbstractInsnNode insn = jumpInsn.getNext();
+        while (insn != null && insn.getOpcode() != ATHROW) {
+            if (insn.getType() == AbstractInsnNode.JUMP_INSN
+                || insn.getType() == AbstractInsnNode.TABLESWITCH_INSN
+                || insn.getType() == AbstractInsnNode.LOOKUPSWITCH_INSN
+            ) {
+                return null;
+            }
+            insn = insn.getNext();
+        }
+
+        for (insn = insn != null ? insn.getNext() : null; insn != null; insn = insn.getNext()) {
+            if (insn == jumpInsn.label) {
+                return insn;
+            }
+            if (insn.getOpcode() >= 0) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static boolean popArguments(Deque<Integer> stack, String methodDesc) {
+        val argumentsCount = getArgumentTypes(methodDesc).length;
+        for (int i = 0; i < argumentsCount; ++i) {
+            if (pop(stack) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean dereference(Deque<Integer> stack, Set<Integer> checkedParamIndexes) {
+        val value = pop(stack);
+        if (value == null) {
+            return false;
+        }
+        if (value != OTHER_VALUE) {
+            checkedParamIndexes.add(value);
+        }
+        return true;
+    }
+
+    @Nullable
+    private static Integer pop(Deque<Integer> stack) {
+        return stack.pollFirst();
+    }
+
+}
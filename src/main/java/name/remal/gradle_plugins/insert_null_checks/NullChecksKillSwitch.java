@@ -0,0 +1,127 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.GETSTATIC;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.PUTSTATIC;
+import static org.objectweb.asm.Type.getInternalName;
+
+import javax.annotation.Nullable;
+import lombok.val;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldInsnNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.InsnList;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+
+/**
+ * A {@code static final boolean} field of a processed class that disables all inserted null checks
+ * if a system property is {@code true}.
+ *
+ * <p>The field is initialized at the beginning of the static initializer,
+ * like {@code $assertionsDisabled} field that javac generates for {@code assert} statements.
+ * JIT compilers treat static final fields as constants, so disabled checks are removed from compiled code.
+ *
+ * <p>If a class doesn't have a static initializer, it's added, see {@link SerialVersionUidUtils}.
+ *
+ * <p>Not thread-safe, a new instance is used for every processed class.
+ */
+class NullChecksKillSwitch {
+
+    public static final String FIELD_DESC = "Z";
+
+    private static final String FIELD_NAME = "$insertNullChecks$disabled";
+
+
+    /**
+     * Returns {@code true} for fields created by {@link #createField(ClassNode)}.
+     */
+    public static boolean isKillSwitchField(String name, String desc) {
+        return name.startsWith(FIELD_NAME) && desc.equals(FIELD_DESC);
+    }
+
+
+    @Nullable
+    private String fieldName;
+
+    public String getFieldName(ClassNode classNode) {
+        if (fieldName == null) {
+            String name = FIELD_NAME;
+            for (int suffix = 2; hasField(classNode, name); ++suffix) {
+                name = FIELD_NAME + suffix;
+            }
+            fieldName = name;
+        }
+        return fieldName;
+    }
+
+    private static boolean hasField(ClassNode classNode, String name) {
+        return classNode.fields.stream()
+            .anyMatch(fieldNode -> fieldNode.name.equals(name));
+    }
+
+    public boolean isUsed() {
+        return fieldName != null;
+    }
+
+    public FieldNode createField(ClassNode classNode) {
+        if (fieldName == null) {
+            throw new IllegalStateException("Kill switch is not used");
+        }
+
+        return new FieldNode(
+            ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC,
+            fieldName,
+            FIELD_DESC,
+            null,
+            null
+        );
+    }
+
+    /**
+     * Creates instructions that push {@code true} if null checks are disabled. Max stack size of the instructions is 1.
+     *
+     * <p>Fields of interfaces must be public, so they are inherited by all implementations.
+     * That's why guards of interfaces read the system property on every invocation, instead of the field.
+     */
+    public InsnList createGuard(ClassNode classNode, String systemPropertyName) {
+        if ((classNode.access & ACC_INTERFACE) != 0) {
+            return createSystemPropertyRead(systemPropertyName);
+        }
+
+        val insns = new InsnList();
+        insns.add(new FieldInsnNode(GETSTATIC, classNode.name, getFieldName(classNode), FIELD_DESC));
+        return insns;
+    }
+
+    /**
+     * Creates instructions that initialize the field. Max stack size of the instructions is 1.
+     */
+    public InsnList createInitialization(ClassNode classNode, String systemPropertyName) {
+        if (fieldName == null) {
+            throw new IllegalStateException("Kill switch is not used");
+        }
+
+        val insns = createSystemPropertyRead(systemPropertyName);
+        insns.add(new FieldInsnNode(PUTSTATIC, classNode.name, fieldName, FIELD_DESC));
+        return insns;
+    }
+
+    private static InsnList createSystemPropertyRead(String systemPropertyName) {
+        val insns = new InsnList();
+        insns.add(new LdcInsnNode(systemPropertyName));
+        insns.add(new MethodInsnNode(
+            INVOKESTATIC,
+            getInternalName(Boolean.class),
+            "getBoolean",
+            "(Ljava/lang/String;)Z"
+        ));
+        return insns;
+    }
+
+}
@@ -0,0 +1,146 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newInputStream;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.size;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+/**
+ * Writes output files only if their content is changed, so a rebuild that produces the same output
+ * doesn't change last modified times of files, and doesn't trigger file system watchers.
+ *
+ * <p>Changed files are written to a temporary file first, that is atomically moved to the target path,
+ * so the target file is never seen truncated, even if the build is interrupted.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class OutputFileUtils {
+
+    private static final int COMPARISON_BUFFER_SIZE = 8192;
+
+
+    /**
+     * @return {@code true} if the file has been written, {@code false} if it already has the same content
+     */
+    @SneakyThrows
+    public static boolean writeIfChanged(Path targetPath, byte[] content) {
+        if (hasContent(targetPath, content)) {
+            return false;
+        }
+
+        val tempPath = createTempFileFor(targetPath);
+        try {
+            write(tempPath, content);
+            move(tempPath, targetPath, REPLACE_EXISTING, ATOMIC_MOVE);
+        } finally {
+            deleteIfExists(tempPath);
+        }
+        return true;
+    }
+
+    /**
+     * @return {@code true} if the file has been copied, {@code false} if the target already has the same content
+     */
+    @SneakyThrows
+    public static boolean copyIfChanged(Path sourcePath, Path targetPath) {
+        return writeIfChanged(targetPath, readAllBytes(sourcePath));
+    }
+
+    /**
+     * Moves a file created by {@link #createTempFileFor(Path)} to the target path,
+     * or deletes it, if the target already has the same content.
+     *
+     * @return {@code true} if the file has been moved, {@code false} if the target already has the same content
+     */
+    @SneakyThrows
+    public static boolean moveIfChanged(Path tempPath, Path targetPath) {
+        try {
+            if (hasSameContent(tempPath, targetPath)) {
+                return false;
+            }
+
+            move(tempPath, targetPath, REPLACE_EXISTING, ATOMIC_MOVE);
+            return true;
+        } finally {
+            deleteIfExists(tempPath);
+        }
+    }
+
+    /**
+     * Creates a temporary file in the directory of the target path, so it can be moved to the target atomically.
+     */
+    @SneakyThrows
+    public static Path createTempFileFor(Path targetPath) {
+        val targetDirPath = createDirectories(targetPath.toAbsolutePath().getParent());
+        return createTempFile(targetDirPath, targetPath.getFileName() + "-", ".tmp");
+    }
+
+
+    /**
+     * Lengths are compared first, so the existing file is read only if it can have the same content.
+     */
+    private static boolean hasContent(Path path, byte[] content) throws IOException {
+        if (!isRegularFile(path) || size(path) != content.length) {
+            return false;
+        }
+
+        return Arrays.equals(readAllBytes(path), content);
+    }
+
+    private static boolean hasSameContent(Path path1, Path path2) throws IOException {
+        if (!isRegularFile(path1) || !isRegularFile(path2) || size(path1) != size(path2)) {
+            return false;
+        }
+
+        try (
+            val in1 = newInputStream(path1);
+            val in2 = newInputStream(path2)
+        ) {
+            val buffer1 = new byte[COMPARISON_BUFFER_SIZE];
+            val buffer2 = new byte[COMPARISON_BUFFER_SIZE];
+            while (true) {
+                val read1 = readFully(in1, buffer1);
+                val read2 = readFully(in2, buffer2);
+                if (read1 != read2) {
+                    return false;
+                }
+                if (read1 == 0) {
+                    return true;
+                }
+                for (int i = 0; i < read1; ++i) {
+                    if (buffer1[i] != buffer2[i]) {
+                        return false;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int totalRead = 0;
+        while (totalRead < buffer.length) {
+            val read = in.read(buffer, totalRead, buffer.length - totalRead);
+            if (read < 0) {
+                break;
+            }
+            totalRead += read;
+        }
+        return totalRead;
+    }
+
+}
@@ -0,0 +1,65 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import lombok.RequiredArgsConstructor;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassHierarchyIndex.TypeInfoSource;
+
+/**
+ * Lazily built index of package-level annotations, declared in {@code package-info} classes.
+ *
+ * <p>The {@code package-info} class of every package is read from its source at most once,
+ * and annotation categories of the package are memoized, so all lookups after the first one are O(1).
+ *
+ * <p>An instance is thread-safe and is supposed to be created once per task execution.
+ */
+@RequiredArgsConstructor
+class PackageInfoIndex {
+
+    public static final String PACKAGE_INFO_SIMPLE_NAME = "package-info";
+
+
+    private final List<TypeInfoSource> sources;
+
+    private final AnnotationDescMatcher annotationDescMatcher;
+
+    private final ConcurrentMap<String, Integer> packageCategories = new ConcurrentHashMap<>();
+
+    /**
+     * Returns a bit mask of annotation categories of the package of the class.
+     */
+    public int getPackageCategories(String classInternalName) {
+        val lastSlashPos = classInternalName.lastIndexOf('/');
+        val packageInternalName = lastSlashPos >= 0 ? classInternalName.substring(0, lastSlashPos) : "";
+        Integer categories = packageCategories.get(packageInternalName);
+        if (categories == null) {
+            // not computed in `computeIfAbsent()`, as reading a type doesn't require any lock
+            categories = readPackageCategories(packageInternalName);
+            val prevCategories = packageCategories.putIfAbsent(packageInternalName, categories);
+            if (prevCategories != null) {
+                categories = prevCategories;
+            }
+        }
+        return categories;
+    }
+
+    private int readPackageCategories(String packageInternalName) {
+        val packageInfoInternalName = packageInternalName.isEmpty()
+            ? PACKAGE_INFO_SIMPLE_NAME
+            : packageInternalName + '/' + PACKAGE_INFO_SIMPLE_NAME;
+        for (val source : sources) {
+            val typeInfo = source.findTypeInfo(packageInfoInternalName);
+            if (typeInfo != null) {
+                int categories = 0;
+                for (val annotationDesc : typeInfo.getAnnotationDescs()) {
+                    categories |= annotationDescMatcher.classify(annotationDesc);
+                }
+                return categories;
+            }
+        }
+        return 0;
+    }
+
+}
@@ -0,0 +1,87 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Math.min;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.Nullable;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+
+@NoArgsConstructor(access = PRIVATE)
+abstract class ParallelProcessingUtils {
+
+    private static final String THREAD_NAME = "insert-null-checks-worker";
+
+    /**
+     * Executes {@code action} for every item using at most {@code parallelism} threads.
+     *
+     * <p>Items are processed sequentially in the current thread if {@code parallelism} is less than 2.
+     */
+    @SneakyThrows
+    @SuppressWarnings("java:S1181")
+    public static <T> void forEachInParallel(List<T> items, int parallelism, Consumer<? super T> action) {
+        val threadsCount = min(parallelism, items.size());
+        if (threadsCount <= 1) {
+            items.forEach(action);
+            return;
+        }
+
+        val executor = newFixedThreadPool(threadsCount, runnable -> {
+            val thread = new Thread(runnable, THREAD_NAME);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            val nextIndex = new AtomicInteger();
+            val failed = new AtomicBoolean();
+            List<Future<?>> futures = new ArrayList<>(threadsCount);
+            for (int i = 0; i < threadsCount; ++i) {
+                futures.add(executor.submit(() -> {
+                    int index;
+                    while (!failed.get() && (index = nextIndex.getAndIncrement()) < items.size()) {
+                        try {
+                            action.accept(items.get(index));
+                        } catch (Throwable e) {
+                            failed.set(true);
+                            throw e;
+                        }
+                    }
+                }));
+            }
+
+            Throwable exception = null;
+            for (val future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    exception = addException(exception, e.getCause());
+                }
+            }
+            if (exception != null) {
+                throw exception;
+            }
+
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Throwable addException(@Nullable Throwable exception, Throwable newException) {
+        if (exception == null) {
+            return newException;
+        }
+
+        exception.addSuppressed(newException);
+        return exception;
+    }
+
+}
@@ -0,0 +1,256 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static lombok.AccessLevel.PRIVATE;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessor.getParameterVarIndex;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACONST_NULL;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.DCONST_1;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.V11;
+import static org.objectweb.asm.Type.getArgumentTypes;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import lombok.NoArgsConstructor;
+import lombok.Value;
+import lombok.val;
+import org.objectweb.asm.Handle;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.AbstractInsnNode;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.IincInsnNode;
+import org.objectweb.asm.tree.InvokeDynamicInsnNode;
+import org.objectweb.asm.tree.LdcInsnNode;
+import org.objectweb.asm.tree.LineNumberNode;
+import org.objectweb.asm.tree.MethodInsnNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.VarInsnNode;
+
+/**
+ * Finds parameters of private methods that can't be null, because all invocations of these methods
+ * pass non-null values: parameters of the invoking method that are checked for null, {@code this},
+ * or constants.
+ *
+ * <p>Every planned parameter of every method is either checked, or is proven to be non-null by this analysis,
+ * so a parameter of an invoking method can be treated as non-null even if the invoking method is private too.
+ * As all chains of invocations start with a non-private method, the result is correct for recursive methods.
+ *
+ * <p>Private methods are considered reachable from outside (and nothing is elided for them),
+ * if they are not invoked directly by the class, or referenced by method handles,
+ * or if they have runtime-visible annotations (frameworks invoke such methods by reflection),
+ * or if the class is a member of a nest (nest members can invoke private methods of each other since Java 11).
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class PrivateMethodCallGraph {
+
+    /**
+     * Returns parameters of private methods that are always invoked with non-null arguments.
+     *
+     * @param plannedChecks indexes of parameters to be checked for every method that will be processed
+     */
+    public static Map<MethodNode, Set<Integer>> findNonNullParametersOfPrivateMethods(
+        ClassNode classNode,
+        Map<MethodNode, List<Integer>> plannedChecks
+    ) {
+        Map<MethodNode, Set<Integer>> result = new LinkedHashMap<>();
+        if (isNestMember(classNode)) {
+            return result;
+        }
+
+        Map<String, MethodNode> privateMethods = new HashMap<>();
+        plannedChecks.keySet().forEach(methodNode -> {
+            if ((methodNode.access & ACC_PRIVATE) != 0 && !hasVisibleAnnotations(methodNode)) {
+                privateMethods.put(methodNode.name + methodNode.desc, methodNode);
+            }
+        });
+        if (privateMethods.isEmpty()) {
+            return result;
+        }
+
+        Map<MethodNode, List<CallSite>> callSites = new HashMap<>();
+        Set<MethodNode> escapedMethods = new HashSet<>();
+        for (val callerNode : classNode.methods) {
+            if (callerNode.instructions == null) {
+                continue;
+            }
+
+            for (AbstractInsnNode insn = callerNode.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+                if (insn instanceof MethodInsnNode) {
+                    val methodInsn = (MethodInsnNode) insn;
+                    if (methodInsn.owner.equals(classNode.name)) {
+                        val calleeNode = privateMethods.get(methodInsn.name + methodInsn.desc);
+                        if (calleeNode != null) {
+                            callSites.computeIfAbsent(calleeNode, __ -> new ArrayList<>())
+                                .add(new CallSite(callerNode, methodInsn));
+                        }
+                    }
+
+                } else if (insn instanceof InvokeDynamicInsnNode) {
+                    for (val bsmArg : ((InvokeDynamicInsnNode) insn).bsmArgs) {
+                        markEscaped(classNode, privateMethods, escapedMethods, bsmArg);
+                    }
+
+                } else if (insn instanceof LdcInsnNode) {
+                    markEscaped(classNode, privateMethods, escapedMethods, ((LdcInsnNode) insn).cst);
+                }
+            }
+        }
+
+        privateMethods.values().forEach(calleeNode -> {
+            val calleeCallSites = callSites.get(calleeNode);
+            if (calleeCallSites == null || escapedMethods.contains(calleeNode)) {
+                // the method can be invoked by reflection, or by a method handle
+                return;
+            }
+
+            Set<Integer> nonNullParamIndexes = new LinkedHashSet<>(plannedChecks.get(calleeNode));
+            for (val callSite : calleeCallSites) {
+                nonNullParamIndexes.removeIf(paramIndex -> !isNonNullArgument(callSite, paramIndex, plannedChecks));
+                if (nonNullParamIndexes.isEmpty()) {
+                    return;
+                }
+            }
+            result.put(calleeNode, nonNullParamIndexes);
+        });
+        return result;
+    }
+
+    private static boolean isNestMember(ClassNode classNode) {
+        if ((classNode.version & 0xFFFF) < V11) {
+            return false;
+        }
+
+        return classNode.nestHostClass != null
+            || (classNode.nestMembers != null && !classNode.nestMembers.isEmpty());
+    }
+
+    private static boolean hasVisibleAnnotations(MethodNode methodNode) {
+        if (methodNode.visibleAnnotations != null && !methodNode.visibleAnnotations.isEmpty()) {
+            return true;
+        }
+
+        if (methodNode.visibleParameterAnnotations != null) {
+            for (val parameterAnnotations : methodNode.visibleParameterAnnotations) {
+                if (parameterAnnotations != null && !parameterAnnotations.isEmpty()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static void markEscaped(
+        ClassNode classNode,
+        Map<String, MethodNode> privateMethods,
+        Set<MethodNode> escapedMethods,
+        Object constant
+    ) {
+        if (constant instanceof Handle) {
+            val handle = (Handle) constant;
+            if (handle.getOwner().equals(classNode.name)) {
+                val methodNode = privateMethods.get(handle.getName() + handle.getDesc());
+                if (methodNode != null) {
+                    escapedMethods.add(methodNode);
+                }
+            }
+        }
+    }
+
+    /**
+     * Only arguments that are pushed by instructions like {@code ALOAD} or {@code LDC} right before the invocation
+     * are analyzed. Arguments computed by more complex expressions are treated as nullable.
+     */
+    private static boolean isNonNullArgument(
+        CallSite callSite,
+        int paramIndex,
+        Map<MethodNode, List<Integer>> plannedChecks
+    ) {
+        val argumentsCount = getArgumentTypes(callSite.getInsn().desc).length;
+        AbstractInsnNode insn = callSite.getInsn();
+        for (int i = argumentsCount - 1; i >= paramIndex; --i) {
+            insn = insn.getPrevious();
+            while (insn instanceof LineNumberNode) {
+                insn = insn.getPrevious();
+            }
+            if (!isSimplePush(insn)) {
+                return false;
+            }
+        }
+
+        if (insn instanceof LdcInsnNode) {
+            val constant = ((LdcInsnNode) insn).cst;
+            return constant instanceof String || constant instanceof Type;
+        }
+
+        if (!(insn instanceof VarInsnNode) || insn.getOpcode() != ALOAD) {
+            return false;
+        }
+
+        val callerNode = callSite.getCaller();
+        val varIndex = ((VarInsnNode) insn).var;
+        if (varIndex == 0 && (callerNode.access & ACC_STATIC) == 0) {
+            // `this`
+            return !isVariableChanged(callerNode, varIndex);
+        }
+
+        val callerCheckedParamIndexes = plannedChecks.get(callerNode);
+        if (callerCheckedParamIndexes == null) {
+            return false;
+        }
+
+        for (val callerParamIndex : callerCheckedParamIndexes) {
+            if (getParameterVarIndex(callerNode, callerParamIndex) == varIndex) {
+                return !isVariableChanged(callerNode, varIndex);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSimplePush(AbstractInsnNode insn) {
+        if (insn == null) {
+            return false;
+        }
+
+        val opcode = insn.getOpcode();
+        return (opcode >= ILOAD && opcode <= ALOAD)
+            || (opcode >= ACONST_NULL && opcode <= DCONST_1)
+            || opcode == BIPUSH
+            || opcode == SIPUSH
+            || insn.getType() == AbstractInsnNode.LDC_INSN;
+    }
+
+    private static boolean isVariableChanged(MethodNode methodNode, int varIndex) {
+        for (AbstractInsnNode insn = methodNode.instructions.getFirst(); insn != null; insn = insn.getNext()) {
+            if (insn instanceof VarInsnNode
+                && insn.getOpcode() >= ISTORE
+                && ((VarInsnNode) insn).var == varIndex
+            ) {
+                return true;
+            }
+            if (insn instanceof IincInsnNode && ((IincInsnNode) insn).var == varIndex) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    @Value
+    private static class CallSite {
+        MethodNode caller;
+        MethodInsnNode insn;
+    }
+
+}
@@ -0,0 +1,43 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import java.util.List;
+import javax.annotation.Nullable;
+import org.objectweb.asm.Attribute;
+import org.objectweb.asm.ByteVector;
+import org.objectweb.asm.ClassWriter;
+
+/**
+ * Empty class attribute that marks class files already processed by {@link ClassFileProcessor}.
+ *
+ * <p>JVM ignores unknown attributes, so the marker doesn't affect runtime behavior.
+ * It protects from inserting the same null checks twice if a class file is processed again.
+ */
+class ProcessedClassAttribute extends Attribute {
+
+    public static final String NAME = "name.remal.insert-null-checks.Processed";
+
+    public static boolean isProcessedClass(@Nullable List<Attribute> attrs) {
+        if (attrs == null || attrs.isEmpty()) {
+            return false;
+        }
+
+        return attrs.stream().anyMatch(attr -> NAME.equals(attr.type));
+    }
+
+
+    public ProcessedClassAttribute() {
+        super(NAME);
+    }
+
+    @Override
+    protected ByteVector write(
+        ClassWriter classWriter,
+        byte[] code,
+        int codeLength,
+        int maxStack,
+        int maxLocals
+    ) {
+        return new ByteVector();
+    }
+
+}
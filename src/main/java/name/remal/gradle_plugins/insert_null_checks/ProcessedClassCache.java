@@ -0,0 +1,198 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.createTempFile;
+import static java.nio.file.Files.deleteIfExists;
+import static java.nio.file.Files.isDirectory;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.readAllBytes;
+import static java.nio.file.Files.readAttributes;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.nio.file.Files.write;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Comparator.comparingLong;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * On-disk cache of {@link ClassFileProcessor} results, that can be shared by all builds of the machine.
+ *
+ * <p>Entries are keyed by a hash of the original bytecode, the config fingerprint, and the plugin JAR file,
+ * so they never become stale. Results of classes that are not changed by processing are stored as empty entries.
+ *
+ * <p>Last modified time of an entry is updated on every hit.
+ * {@link #evict()} deletes least recently used entries, if the total size of the cache exceeds the limit.
+ *
+ * <p>Thread-safe. Entries are written atomically, so the same directory can be used by several Gradle daemons.
+ * I/O errors are ignored, as the cache is an optimization only.
+ */
+class ProcessedClassCache {
+
+    private static final String IMPLEMENTATION_FINGERPRINT = calculateImplementationFingerprint();
+
+    /**
+     * Entries of a different plugin version get different keys.
+     * If the plugin is not loaded from a JAR file (in unit tests, for example),
+     * entries can't be reused by other JVMs.
+     */
+    private static String calculateImplementationFingerprint() {
+        try {
+            val codeSource = ProcessedClassCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                val path = new File(codeSource.getLocation().toURI()).toPath();
+                if (isRegularFile(path)) {
+                    val attributes = readAttributes(path, BasicFileAttributes.class);
+                    return path.toAbsolutePath() + "\0" + attributes.size() + "\0" + attributes.lastModifiedTime();
+                }
+            }
+        } catch (Exception ignored) {
+            // fall back to a unique fingerprint
+        }
+        return UUID.randomUUID().toString();
+    }
+
+
+    private final Path directory;
+
+    private final long maxSize;
+
+    /**
+     * @param maxSize max total size of entries in bytes
+     */
+    public ProcessedClassCache(Path directory, long maxSize) {
+        this.directory = directory.toAbsolutePath();
+        this.maxSize = maxSize;
+    }
+
+    @SneakyThrows
+    public String getKey(String configFingerprint, byte[] bytecode) {
+        val digest = MessageDigest.getInstance("SHA-256");
+        digest.update(IMPLEMENTATION_FINGERPRINT.getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(configFingerprint.getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(bytecode);
+
+        val hash = digest.digest();
+        val sb = new StringBuilder(hash.length * 2);
+        for (val hashByte : hash) {
+            sb.append(Character.forDigit((hashByte >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(hashByte & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns processed bytecode, or an empty array if the class is not changed by processing,
+     * or {@code null} if there is no entry for the key.
+     */
+    @Nullable
+    public byte[] get(String key) {
+        val entryPath = getEntryPath(key);
+        final byte[] content;
+        try {
+            content = readAllBytes(entryPath);
+        } catch (IOException e) {
+            return null;
+        }
+
+        try {
+            setLastModifiedTime(entryPath, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            // the entry has just been evicted, but its content has been read already
+        }
+        return content;
+    }
+
+    /**
+     * @param processedBytecode processed bytecode, or {@code null} if the class is not changed by processing
+     */
+    public void put(String key, @Nullable byte[] processedBytecode) {
+        val entryPath = getEntryPath(key);
+        try {
+            val entryDirPath = createDirectories(entryPath.getParent());
+            val tempPath = createTempFile(entryDirPath, key + "-", ".tmp");
+            try {
+                write(tempPath, processedBytecode != null ? processedBytecode : new byte[0]);
+                move(tempPath, entryPath, REPLACE_EXISTING, ATOMIC_MOVE);
+            } finally {
+                deleteIfExists(tempPath);
+            }
+        } catch (IOException ignored) {
+            // the class is processed again next time
+        }
+    }
+
+    private Path getEntryPath(String key) {
+        // entries are split into subdirectories, so there are not too many files in a single directory
+        return directory.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    /**
+     * Deletes least recently used entries until the total size of the cache doesn't exceed the limit.
+     */
+    @SneakyThrows
+    public void evict() {
+        if (!isDirectory(directory)) {
+            return;
+        }
+
+        List<CacheEntry> entries = new ArrayList<>();
+        long totalSize = 0;
+        try (val paths = walk(directory, 2)) {
+            for (val path : (Iterable<Path>) paths::iterator) {
+                try {
+                    val attributes = readAttributes(path, BasicFileAttributes.class);
+                    if (attributes.isRegularFile()) {
+                        entries.add(new CacheEntry(path, attributes.size(), attributes.lastModifiedTime().toMillis()));
+                        totalSize += attributes.size();
+                    }
+                } catch (NoSuchFileException ignored) {
+                    // deleted by another process
+                }
+            }
+        }
+
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        entries.sort(comparingLong(CacheEntry::getLastModifiedMillis));
+        for (val entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            try {
+                deleteIfExists(entry.getPath());
+            } catch (IOException ignored) {
+                // the entry is deleted next time
+            }
+            totalSize -= entry.getSize();
+        }
+    }
+
+    @Value
+    private static class CacheEntry {
+        Path path;
+        long size;
+        long lastModifiedMillis;
+    }
+
+}
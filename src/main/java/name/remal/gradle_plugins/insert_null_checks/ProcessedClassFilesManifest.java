@@ -0,0 +1,120 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.exists;
+import static java.nio.file.Files.getLastModifiedTime;
+import static java.nio.file.Files.move;
+import static java.nio.file.Files.newBufferedReader;
+import static java.nio.file.Files.newBufferedWriter;
+import static java.nio.file.Files.size;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.emptyMap;
+import static lombok.AccessLevel.PRIVATE;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Stores states of class files after they were processed by {@link ClassFileProcessor}.
+ *
+ * <p>Class files that have the same state on the next run were not rewritten by the compiler,
+ * so they don't have to be processed again.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class ProcessedClassFilesManifest {
+
+    private static final String FORMAT_VERSION = "1";
+
+    private static final char SEPARATOR = '\t';
+
+
+    @SneakyThrows
+    public static Map<String, ClassFileState> readManifest(Path manifestPath, String configFingerprint) {
+        if (!exists(manifestPath)) {
+            return emptyMap();
+        }
+
+        Map<String, ClassFileState> states = new LinkedHashMap<>();
+        try (val reader = newBufferedReader(manifestPath, UTF_8)) {
+            if (!FORMAT_VERSION.equals(reader.readLine())
+                || !configFingerprint.equals(reader.readLine())
+            ) {
+                return emptyMap();
+            }
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                val sizeSeparatorPos = line.indexOf(SEPARATOR);
+                val lastModifiedSeparatorPos = line.indexOf(SEPARATOR, sizeSeparatorPos + 1);
+                if (sizeSeparatorPos <= 0 || lastModifiedSeparatorPos <= 0) {
+                    return emptyMap();
+                }
+
+                val relativePath = line.substring(lastModifiedSeparatorPos + 1);
+                val state = new ClassFileState(
+                    Long.parseLong(line.substring(0, sizeSeparatorPos)),
+                    Long.parseLong(line.substring(sizeSeparatorPos + 1, lastModifiedSeparatorPos))
+                );
+                states.put(relativePath, state);
+            }
+        } catch (NumberFormatException e) {
+            return emptyMap();
+        }
+        return states;
+    }
+
+    @SneakyThrows
+    public static void writeManifest(
+        Path manifestPath,
+        String configFingerprint,
+        Map<String, ClassFileState> states
+    ) {
+        val manifestDirPath = manifestPath.getParent();
+        if (manifestDirPath != null) {
+            createDirectories(manifestDirPath);
+        }
+
+        val tempManifestPath = manifestPath.resolveSibling(manifestPath.getFileName() + ".tmp");
+        try (val writer = newBufferedWriter(tempManifestPath, UTF_8)) {
+            writer.write(FORMAT_VERSION);
+            writer.write('\n');
+            writer.write(configFingerprint);
+            writer.write('\n');
+            for (val entry : states.entrySet()) {
+                val state = entry.getValue();
+                writer.write(String.valueOf(state.getSize()));
+                writer.write(SEPARATOR);
+                writer.write(String.valueOf(state.getLastModifiedMillis()));
+                writer.write(SEPARATOR);
+                writer.write(entry.getKey());
+                writer.write('\n');
+            }
+        }
+        move(tempManifestPath, manifestPath, REPLACE_EXISTING);
+    }
+
+
+    @Value
+    public static class ClassFileState {
+
+        long size;
+
+        long lastModifiedMillis;
+
+        @SneakyThrows
+        public static ClassFileState readClassFileState(Path path) {
+            return new ClassFileState(
+                size(path),
+                getLastModifiedTime(path).toMillis()
+            );
+        }
+
+    }
+
+}
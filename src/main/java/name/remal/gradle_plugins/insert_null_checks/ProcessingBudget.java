@@ -0,0 +1,70 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.Timer;
+
+/**
+ * Build-wide limits of resources used for processing of class files by all tasks executed in parallel.
+ *
+ * <p>Every task can process class files in several threads (see {@link InsertNullChecksProperties#getParallelism()}),
+ * so without a shared limit, many compile tasks finishing at the same time would oversubscribe CPU and memory.
+ *
+ * <p>Permits are acquired for a single class file, always in the same order: a worker first, then in-flight bytes.
+ * Actions never call the budget again, so a thread holds permits of a single class file only,
+ * and the budget can't cause a deadlock.
+ */
+class ProcessingBudget {
+
+    private final Semaphore workers;
+
+    private final Semaphore inFlightBytes;
+
+    private final int maxInFlightBytes;
+
+    /**
+     * @param maxWorkers max number of class files processed at the same time
+     * @param maxInFlightBytes max total size of class files processed at the same time
+     */
+    public ProcessingBudget(int maxWorkers, long maxInFlightBytes) {
+        this.workers = new Semaphore(max(maxWorkers, 1), true);
+        this.maxInFlightBytes = (int) min(max(maxInFlightBytes, 1), Integer.MAX_VALUE);
+        this.inFlightBytes = new Semaphore(this.maxInFlightBytes, true);
+    }
+
+    /**
+     * Executes the action once both a worker and {@code bytes} of in-flight bytes are available.
+     *
+     * <p>A class file larger than the whole in-flight bytes limit is processed when no other class file is.
+     */
+    @SneakyThrows
+    public <T> T call(long bytes, ProcessingMetrics metrics, Supplier<T> action) {
+        val bytePermits = (int) min(max(bytes, 1), maxInFlightBytes);
+        val waitStartNanos = System.nanoTime();
+        workers.acquire();
+        try {
+            inFlightBytes.acquire(bytePermits);
+            try {
+                metrics.addTimeSince(Timer.BUDGET_WAIT, waitStartNanos);
+                return action.get();
+            } finally {
+                inFlightBytes.release(bytePermits);
+            }
+        } finally {
+            workers.release();
+        }
+    }
+
+    public void run(long bytes, ProcessingMetrics metrics, Runnable action) {
+        call(bytes, metrics, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+}
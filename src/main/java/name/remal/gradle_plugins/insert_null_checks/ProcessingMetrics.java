@@ -0,0 +1,327 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.createDirectories;
+import static java.nio.file.Files.write;
+import static java.util.Comparator.comparing;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.stream.Collectors.toList;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.Value;
+import lombok.val;
+
+/**
+ * Thread-safe counters and timers of a single task execution.
+ *
+ * <p>Timers are summed across all worker threads, so with parallel processing they can exceed the task duration.
+ */
+class ProcessingMetrics {
+
+    enum Counter {
+        FILES_SCANNED,
+        FILES_UP_TO_DATE,
+        CLASSES_PROCESSED,
+        CLASSES_REWRITTEN,
+        CACHE_HITS,
+        METHODS_INSTRUMENTED,
+        NULL_CHECKS_INSERTED,
+        NULL_CHECKS_ELIDED,
+        BYTES_READ,
+        BYTES_WRITTEN,
+        WRITES_SKIPPED,
+    }
+
+    enum Timer {
+        READ,
+        PARSE,
+        TRANSFORM,
+        WRITE,
+        BUDGET_WAIT,
+    }
+
+    enum ClassSkipReason {
+        ALREADY_PROCESSED,
+        IN_TESTS_ONLY,
+        MODULE_INFO,
+        NO_METHODS,
+        DEFINED_IN_METHOD,
+        KOTLIN_CLASS,
+        GROOVY_CLOSURE,
+        EXCLUSION_ANNOTATION,
+        PACKAGE_EXCLUSION_ANNOTATION,
+        GENERATED_ANNOTATION,
+        VALIDATION_ANNOTATION,
+        PACKAGE_VALIDATION_ANNOTATION,
+        NOT_NON_NULL_BY_DEFAULT,
+        INHERITED_VALIDATION_ANNOTATION,
+        NO_METHODS_TO_INSTRUMENT,
+    }
+
+    enum MethodSkipReason {
+        ABSTRACT,
+        SYNTHETIC,
+        NO_INSTRUCTIONS,
+        PRIVATE,
+        NO_PARAMETERS,
+        NO_NON_NULL_PARAMETERS,
+        EQUALS,
+        ENUM_VALUE_OF,
+        EXCLUSION_ANNOTATION,
+        GENERATED_ANNOTATION,
+        VALIDATION_ANNOTATION,
+        INHERITED_VALIDATION_ANNOTATION,
+        INVOKES_SUPER_METHOD_ONLY,
+        ALL_PARAMETERS_CHECKED,
+        EXCEEDS_INLINING_THRESHOLD,
+    }
+
+    /**
+     * Estimated bytecode size of an instrumented method that fitted the inlining threshold before instrumentation,
+     * but not after, see {@link BytecodeSizeUtils}.
+     *
+     * <p>Only such methods are recorded, so memory usage and report size don't grow with the count of all
+     * instrumented methods.
+     */
+    @Value
+    static class MethodSizeChange {
+        String className;
+        String methodName;
+        String methodDesc;
+        int sizeBefore;
+        int sizeAfter;
+    }
+
+
+    private final long startNanos = System.nanoTime();
+
+    private final Map<Counter, LongAdder> counters = createAdders(Counter.class);
+
+    private final Map<Timer, LongAdder> timerNanos = createAdders(Timer.class);
+
+    private final Map<ClassSkipReason, LongAdder> skippedClasses = createAdders(ClassSkipReason.class);
+
+    private final Map<MethodSkipReason, LongAdder> skippedMethods = createAdders(MethodSkipReason.class);
+
+    private final Queue<MethodSizeChange> methodsExceedingInliningThreshold = new ConcurrentLinkedQueue<>();
+
+    private final Queue<String> warnings = new ConcurrentLinkedQueue<>();
+
+    private static <E extends Enum<E>> Map<E, LongAdder> createAdders(Class<E> enumClass) {
+        Map<E, LongAdder> adders = new EnumMap<>(enumClass);
+        for (val key : enumClass.getEnumConstants()) {
+            adders.put(key, new LongAdder());
+        }
+        return adders;
+    }
+
+
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    public void add(Counter counter, long value) {
+        counters.get(counter).add(value);
+    }
+
+    public void addTimeSince(Timer timer, long startNanos) {
+        timerNanos.get(timer).add(System.nanoTime() - startNanos);
+    }
+
+    public void classSkipped(ClassSkipReason reason) {
+        skippedClasses.get(reason).increment();
+    }
+
+    public void methodSkipped(MethodSkipReason reason) {
+        skippedMethods.get(reason).increment();
+    }
+
+    public void methodExceededInliningThreshold(MethodSizeChange change) {
+        methodsExceedingInliningThreshold.add(change);
+    }
+
+    public void addWarning(String message) {
+        warnings.add(message);
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    public List<String> getWarnings() {
+        return new ArrayList<>(warnings);
+    }
+
+    /**
+     * Returns a single warning with the number of instrumented methods that are not small enough to be inlined
+     * anymore, or {@code null} if there are no such methods.
+     */
+    @Nullable
+    public String getInliningThresholdWarning(Path reportPath) {
+        val count = methodsExceedingInliningThreshold.size();
+        if (count == 0) {
+            return null;
+        }
+
+        return String.format(
+            "Null checks made %d methods exceed the inlining threshold, see %s or info log for details",
+            count,
+            reportPath
+        );
+    }
+
+    /**
+     * Returns messages about instrumented methods that are not small enough to be inlined anymore.
+     *
+     * <p>The inlining threshold is enabled by default, so these messages are expected to be logged
+     * at info level, not to flood the build log of large modules. Only their count is logged as a warning,
+     * see {@link #getInliningThresholdWarning(Path)}.
+     */
+    public List<String> getInliningThresholdMessages() {
+        return getSortedMethodsExceedingInliningThreshold().stream()
+            .map(change -> String.format(
+                "Null checks increased bytecode size of %s.%s%s from %d to %d bytes,"
+                    + " so it exceeds the inlining threshold now",
+                change.getClassName().replace('/', '.'),
+                change.getMethodName(),
+                change.getMethodDesc(),
+                change.getSizeBefore(),
+                change.getSizeAfter()
+            ))
+            .collect(toList());
+    }
+
+    private List<MethodSizeChange> getSortedMethodsExceedingInliningThreshold() {
+        // changes are added by several threads, so they are sorted to make reports reproducible
+        List<MethodSizeChange> changes = new ArrayList<>(methodsExceedingInliningThreshold);
+        changes.sort(comparing(MethodSizeChange::getClassName)
+            .thenComparing(MethodSizeChange::getMethodName)
+            .thenComparing(MethodSizeChange::getMethodDesc)
+        );
+        return changes;
+    }
+
+
+    public String toSummary() {
+        return String.format(
+            "%d class files scanned, %d up-to-date, %d processed, %d rewritten, %d taken from cache,"
+                + " %d not written as identical, %d methods instrumented, %d null checks inserted,"
+                + " %d redundant null checks elided, %d methods exceed the inlining threshold now, took %d ms",
+            get(Counter.FILES_SCANNED),
+            get(Counter.FILES_UP_TO_DATE),
+            get(Counter.CLASSES_PROCESSED),
+            get(Counter.CLASSES_REWRITTEN),
+            get(Counter.CACHE_HITS),
+            get(Counter.WRITES_SKIPPED),
+            get(Counter.METHODS_INSTRUMENTED),
+            get(Counter.NULL_CHECKS_INSERTED),
+            get(Counter.NULL_CHECKS_ELIDED),
+            methodsExceedingInliningThreshold.size(),
+            NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+        );
+    }
+
+    @SneakyThrows
+    public void writeJsonReport(Path reportPath, String taskPath) {
+        val reportDirPath = reportPath.getParent();
+        if (reportDirPath != null) {
+            createDirectories(reportDirPath);
+        }
+        write(reportPath, toJson(taskPath).getBytes(UTF_8));
+    }
+
+    String toJson(String taskPath) {
+        val json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"task\": \"").append(escapeJson(taskPath)).append("\",\n");
+        json.append("  \"durationMillis\": ").append(NANOSECONDS.toMillis(System.nanoTime() - startNanos))
+            .append(",\n");
+        appendJsonObject(json, "counters", counters, 1).append(",\n");
+        appendJsonObject(json, "timingsMillis", timerNanos, 1_000_000).append(",\n");
+        appendJsonObject(json, "skippedClasses", skippedClasses, 1).append(",\n");
+        appendJsonObject(json, "skippedMethods", skippedMethods, 1).append(",\n");
+        appendMethodsExceedingInliningThreshold(json).append('\n');
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private StringBuilder appendMethodsExceedingInliningThreshold(StringBuilder json) {
+        json.append("  \"methodsExceedingInliningThreshold\": [");
+        boolean first = true;
+        for (val change : getSortedMethodsExceedingInliningThreshold()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    {")
+                .append("\"class\": \"").append(escapeJson(change.getClassName().replace('/', '.'))).append("\", ")
+                .append("\"method\": \"").append(escapeJson(change.getMethodName() + change.getMethodDesc()))
+                .append("\", ")
+                .append("\"sizeBefore\": ").append(change.getSizeBefore()).append(", ")
+                .append("\"sizeAfter\": ").append(change.getSizeAfter())
+                .append('}');
+        }
+        return json.append(first ? "]" : "\n  ]");
+    }
+
+    private static StringBuilder appendJsonObject(
+        StringBuilder json,
+        String name,
+        Map<? extends Enum<?>, LongAdder> values,
+        long divisor
+    ) {
+        json.append("  \"").append(name).append("\": {");
+        boolean first = true;
+        for (val entry : values.entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            first = false;
+            json.append("    \"").append(toCamelCase(entry.getKey().name())).append("\": ")
+                .append(entry.getValue().sum() / divisor);
+        }
+        return json.append("\n  }");
+    }
+
+    private static String escapeJson(String value) {
+        val result = new StringBuilder(value.length());
+        for (val ch : value.toCharArray()) {
+            if (ch == '"' || ch == '\\') {
+                result.append('\\').append(ch);
+            } else if (ch == '\n') {
+                result.append("\\n");
+            } else if (ch == '\r') {
+                result.append("\\r");
+            } else if (ch == '\t') {
+                result.append("\\t");
+            } else if (ch < 0x20) {
+                // other control characters are not allowed in JSON strings
+                result.append(String.format("\\u%04x", (int) ch));
+            } else {
+                result.append(ch);
+            }
+        }
+        return result.toString();
+    }
+
+    private static String toCamelCase(String constantName) {
+        val result = new StringBuilder(constantName.length());
+        boolean upperNext = false;
+        for (val ch : constantName.toLowerCase(Locale.ROOT).toCharArray()) {
+            if (ch == '_') {
+                upperNext = true;
+            } else {
+                result.append(upperNext ? Character.toUpperCase(ch) : ch);
+                upperNext = false;
+            }
+        }
+        return result.toString();
+    }
+
+}
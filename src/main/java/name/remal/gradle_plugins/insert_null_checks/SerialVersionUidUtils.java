@@ -0,0 +1,189 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Comparator.comparing;
+import static lombok.AccessLevel.PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_ABSTRACT;
+import static org.objectweb.asm.Opcodes.ACC_ENUM;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_INTERFACE;
+import static org.objectweb.asm.Opcodes.ACC_NATIVE;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PROTECTED;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ACC_STRICT;
+import static org.objectweb.asm.Opcodes.ACC_SYNCHRONIZED;
+import static org.objectweb.asm.Opcodes.ACC_SYNTHETIC;
+import static org.objectweb.asm.Opcodes.ACC_TRANSIENT;
+import static org.objectweb.asm.Opcodes.ACC_VOLATILE;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+
+/**
+ * Adding a static initializer changes the default {@code serialVersionUID} of a {@link java.io.Serializable} class.
+ * So, before adding it, the default value is calculated and declared explicitly,
+ * the same way as {@link java.io.ObjectStreamClass} calculates it.
+ *
+ * <p>Private fields and methods that are added by the plugin don't affect the default value.
+ */
+@NoArgsConstructor(access = PRIVATE)
+abstract class SerialVersionUidUtils {
+
+    public static final String FIELD_NAME = "serialVersionUID";
+
+    public static final String FIELD_DESC = "J";
+
+    private static final int CLASS_MODIFIERS_MASK = ACC_PUBLIC | ACC_FINAL | ACC_INTERFACE | ACC_ABSTRACT;
+
+    private static final int FIELD_MODIFIERS_MASK = ACC_PUBLIC | ACC_PRIVATE | ACC_PROTECTED | ACC_STATIC | ACC_FINAL
+        | ACC_VOLATILE | ACC_TRANSIENT;
+
+    private static final int METHOD_MODIFIERS_MASK = ACC_PUBLIC | ACC_PRIVATE | ACC_PROTECTED | ACC_STATIC | ACC_FINAL
+        | ACC_SYNCHRONIZED | ACC_NATIVE | ACC_ABSTRACT | ACC_STRICT;
+
+
+    /**
+     * Returns {@code true} if the class can be {@link java.io.Serializable} and relies on the default
+     * {@code serialVersionUID}.
+     *
+     * <p>Supertypes are not read, so every class that extends another class or implements an interface is treated
+     * as possibly serializable. The field is ignored by other classes.
+     */
+    public static boolean isDefaultSerialVersionUidUsed(ClassNode classNode) {
+        if ((classNode.access & (ACC_INTERFACE | ACC_ENUM)) != 0
+            || "java/lang/Record".equals(classNode.superName)
+        ) {
+            // `serialVersionUID` of interfaces, enums and records is always 0
+            return false;
+        }
+
+        if ("java/lang/Object".equals(classNode.superName)
+            && (classNode.interfaces == null || classNode.interfaces.isEmpty())
+        ) {
+            return false;
+        }
+
+        return classNode.fields == null
+            || classNode.fields.stream().noneMatch(fieldNode -> fieldNode.name.equals(FIELD_NAME));
+    }
+
+    public static FieldNode createSerialVersionUidField(ClassNode classNode) {
+        return new FieldNode(
+            ACC_PRIVATE | ACC_STATIC | ACC_FINAL | ACC_SYNTHETIC,
+            FIELD_NAME,
+            FIELD_DESC,
+            null,
+            computeDefaultSerialVersionUid(classNode)
+        );
+    }
+
+    @SneakyThrows
+    static long computeDefaultSerialVersionUid(ClassNode classNode) {
+        val bytes = new ByteArrayOutputStream();
+        try (val out = new DataOutputStream(bytes)) {
+            out.writeUTF(classNode.name.replace('/', '.'));
+
+            int classModifiers = getClassModifiers(classNode) & CLASS_MODIFIERS_MASK;
+            val methods = classNode.methods != null ? classNode.methods : new ArrayList<MethodNode>();
+            if ((classModifiers & ACC_INTERFACE) != 0) {
+                val hasMethods = methods.stream().anyMatch(methodNode -> !methodNode.name.startsWith("<"));
+                classModifiers = hasMethods ? classModifiers | ACC_ABSTRACT : classModifiers & ~ACC_ABSTRACT;
+            }
+            out.writeInt(classModifiers);
+
+            if (classNode.interfaces != null) {
+                List<String> interfaceNames = new ArrayList<>(classNode.interfaces);
+                interfaceNames.sort(null);
+                for (val interfaceName : interfaceNames) {
+                    out.writeUTF(interfaceName.replace('/', '.'));
+                }
+            }
+
+            if (classNode.fields != null) {
+                List<FieldNode> fields = new ArrayList<>(classNode.fields);
+                fields.sort(comparing(fieldNode -> fieldNode.name));
+                for (val fieldNode : fields) {
+                    val modifiers = fieldNode.access & FIELD_MODIFIERS_MASK;
+                    if ((modifiers & ACC_PRIVATE) == 0 || (modifiers & (ACC_STATIC | ACC_TRANSIENT)) == 0) {
+                        out.writeUTF(fieldNode.name);
+                        out.writeInt(modifiers);
+                        out.writeUTF(fieldNode.desc);
+                    }
+                }
+            }
+
+            if (methods.stream().anyMatch(methodNode -> methodNode.name.equals("<clinit>"))) {
+                out.writeUTF("<clinit>");
+                out.writeInt(ACC_STATIC);
+                out.writeUTF("()V");
+            }
+
+            List<MethodNode> constructors = new ArrayList<>();
+            List<MethodNode> otherMethods = new ArrayList<>();
+            for (val methodNode : methods) {
+                if (methodNode.name.equals("<init>")) {
+                    constructors.add(methodNode);
+                } else if (!methodNode.name.equals("<clinit>")) {
+                    otherMethods.add(methodNode);
+                }
+            }
+            constructors.sort(comparing(methodNode -> methodNode.desc));
+            otherMethods.sort(comparing((MethodNode methodNode) -> methodNode.name)
+                .thenComparing(methodNode -> methodNode.desc)
+            );
+            writeMethods(out, constructors);
+            writeMethods(out, otherMethods);
+        }
+
+        val hash = MessageDigest.getInstance("SHA").digest(bytes.toByteArray());
+        long result = 0;
+        for (int i = Math.min(hash.length, 8) - 1; i >= 0; --i) {
+            result = (result << 8) | (hash[i] & 0xFF);
+        }
+        return result;
+    }
+
+    @SneakyThrows
+    private static void writeMethods(DataOutputStream out, List<MethodNode> methods) {
+        for (val methodNode : methods) {
+            val modifiers = methodNode.access & METHOD_MODIFIERS_MASK;
+            if ((modifiers & ACC_PRIVATE) == 0) {
+                out.writeUTF(methodNode.name);
+                out.writeInt(modifiers);
+                out.writeUTF(methodNode.desc.replace('/', '.'));
+            }
+        }
+    }
+
+    /**
+     * Modifiers of nested classes are taken from {@code InnerClasses} attribute, like {@link Class#getModifiers()}.
+     */
+    private static int getClassModifiers(ClassNode classNode) {
+        val innerClass = findInnerClassAccess(classNode);
+        return innerClass != null ? innerClass : classNode.access;
+    }
+
+    @Nullable
+    private static Integer findInnerClassAccess(ClassNode classNode) {
+        if (classNode.innerClasses != null) {
+            for (val innerClassNode : classNode.innerClasses) {
+                if (innerClassNode.name.equals(classNode.name)) {
+                    return innerClassNode.access;
+                }
+            }
+        }
+        return null;
+    }
+
+}
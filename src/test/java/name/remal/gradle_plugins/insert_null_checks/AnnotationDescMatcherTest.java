@@ -0,0 +1,70 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.EXCLUSION;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.GENERATED;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.KOTLIN_METADATA;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.NON_NULL;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.NON_NULL_BY_DEFAULT;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.NULLABLE;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.VALIDATION;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class AnnotationDescMatcherTest {
+
+    final AnnotationDescMatcher matcher = newAnnotationDescMatcher(
+        singletonList("org.immutables.value.Generated"),
+        singletonList("pkg.Validated"),
+        asList("javax.validation", "jakarta.validation"),
+        asList("javax.annotation.Nonnull", "org.jetbrains.annotations.NotNull"),
+        singletonList("org.jspecify.annotations.NullMarked"),
+        asList("Nullable", "Null$List")
+    );
+
+    @Test
+    void exact() {
+        assertEquals(EXCLUSION | GENERATED, matcher.classify("Lorg/immutables/value/Generated;"));
+        assertEquals(VALIDATION, matcher.classify("Lpkg/Validated;"));
+        assertEquals(NON_NULL, matcher.classify("Ljavax/annotation/Nonnull;"));
+        assertEquals(NON_NULL, matcher.classify("Lorg/jetbrains/annotations/NotNull;"));
+        assertEquals(NON_NULL_BY_DEFAULT, matcher.classify("Lorg/jspecify/annotations/NullMarked;"));
+        assertEquals(0, matcher.classify("Lpkg/Validated2;"));
+        assertEquals(0, matcher.classify("Lpkg/Validate;"));
+    }
+
+    @Test
+    void prefix() {
+        assertEquals(VALIDATION, matcher.classify("Ljavax/validation/Valid;"));
+        assertEquals(VALIDATION, matcher.classify("Ljakarta/validation/constraints/NotNull;"));
+        assertEquals(0, matcher.classify("Ljavax/validationx/Valid;"));
+    }
+
+    @Test
+    void suffix() {
+        assertEquals(NULLABLE, matcher.classify("Ljavax/annotation/Nullable;"));
+        assertEquals(NULLABLE | VALIDATION, matcher.classify("Ljavax/validation/constraints/Null$List;"));
+        assertEquals(GENERATED, matcher.classify("Ljavax/annotation/processing/Generated;"));
+        assertEquals(0, matcher.classify("Lpkg/NotNullable;"));
+    }
+
+    @Test
+    void kotlinMetadata() {
+        assertEquals(KOTLIN_METADATA, matcher.classify("Lkotlin/Metadata;"));
+        assertEquals(KOTLIN_METADATA, matcher.classify("Lshaded/kotlin/Metadata;"));
+        assertEquals(0, matcher.classify("Lkotlinx/Metadata;"));
+    }
+
+    @Test
+    void matches() {
+        assertTrue(matcher.matches("Ljavax/annotation/Nullable;", NULLABLE | NON_NULL));
+        assertFalse(matcher.matches("Ljavax/annotation/Nullable;", NON_NULL));
+        assertFalse(matcher.matches("", NULLABLE));
+    }
+
+}
@@ -0,0 +1,203 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.readAllBytes;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.newConfigBuilder;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.readBytecode;
+import static name.remal.gradle_plugins.insert_null_checks.ClassHeader.readClassHeader;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.CONTRACT_INDEX_PATH;
+import static org.apache.commons.compress.archivers.zip.ZipArchiveEntry.DEFLATED;
+import static org.apache.commons.compress.archivers.zip.ZipArchiveEntry.STORED;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
+import java.util.zip.CRC32;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.Fixture;
+import org.apache.commons.compress.archivers.zip.X5455_ExtendedTimestamp;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.objectweb.asm.ClassReader;
+
+class ArchiveProcessorTest {
+
+    private static final String CLASS_ENTRY_NAME = Fixture.class.getName().replace('.', '/') + ".class";
+
+    private static final String RESOURCE_ENTRY_NAME = "pkg/resource.txt";
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @SneakyThrows
+    void roundTrip() {
+        val sourcePath = writeSourceArchive();
+        val targetPath = tempDir.resolve("target.jar");
+        val metrics = processArchive(sourcePath, targetPath, emptyList(), null);
+
+        try (
+            val source = ZipFile.builder().setPath(sourcePath).get();
+            val target = ZipFile.builder().setPath(targetPath).get()
+        ) {
+            assertNotNull(target.getEntry("META-INF/MANIFEST.MF"));
+            assertNull(target.getEntry("META-INF/SIGNER.SF"));
+            assertNull(target.getEntry("META-INF/SIGNER.RSA"));
+            assertEquals(1, metrics.getWarnings().size(), metrics.getWarnings().toString());
+
+            val sourceClassEntry = source.getEntry(CLASS_ENTRY_NAME);
+            val targetClassEntry = target.getEntry(CLASS_ENTRY_NAME);
+            assertTrue(readClassHeader(new ClassReader(readEntry(target, targetClassEntry))).isProcessed());
+            assertEquals(sourceClassEntry.getMethod(), targetClassEntry.getMethod());
+            assertEquals(sourceClassEntry.getTime(), targetClassEntry.getTime());
+            assertEquals(sourceClassEntry.getUnixMode(), targetClassEntry.getUnixMode());
+            assertEquals(sourceClassEntry.getExternalAttributes(), targetClassEntry.getExternalAttributes());
+            assertEquals(sourceClassEntry.getComment(), targetClassEntry.getComment());
+            assertNotNull(targetClassEntry.getExtraField(X5455_ExtendedTimestamp.HEADER_ID));
+
+            val sourceResourceEntry = source.getEntry(RESOURCE_ENTRY_NAME);
+            val targetResourceEntry = target.getEntry(RESOURCE_ENTRY_NAME);
+            assertArrayEquals(readEntry(source, sourceResourceEntry), readEntry(target, targetResourceEntry));
+            assertEquals(sourceResourceEntry.getMethod(), targetResourceEntry.getMethod());
+            assertEquals(sourceResourceEntry.getComment(), targetResourceEntry.getComment());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void signatureIsKeptIfNoClassIsProcessed() {
+        val sourcePath = writeSourceArchive();
+        val targetPath = tempDir.resolve("target.jar");
+        val metrics = processArchive(sourcePath, targetPath, singletonList("not.existing"), null);
+
+        try (
+            val source = ZipFile.builder().setPath(sourcePath).get();
+            val target = ZipFile.builder().setPath(targetPath).get()
+        ) {
+            assertArrayEquals(
+                readEntry(source, source.getEntry("META-INF/SIGNER.SF")),
+                readEntry(target, target.getEntry("META-INF/SIGNER.SF"))
+            );
+            assertArrayEquals(
+                readEntry(source, source.getEntry("META-INF/SIGNER.RSA")),
+                readEntry(target, target.getEntry("META-INF/SIGNER.RSA"))
+            );
+            assertArrayEquals(
+                readEntry(source, source.getEntry(CLASS_ENTRY_NAME)),
+                readEntry(target, target.getEntry(CLASS_ENTRY_NAME))
+            );
+            assertEquals(emptyList(), metrics.getWarnings());
+        }
+    }
+
+    @Test
+    @SneakyThrows
+    void processingIsReproducible() {
+        val sourcePath = writeSourceArchive();
+        val firstTargetPath = tempDir.resolve("first.jar");
+        processArchive(sourcePath, firstTargetPath, emptyList(), new ContractIndex());
+        val secondTargetPath = tempDir.resolve("second.jar");
+        processArchive(sourcePath, secondTargetPath, emptyList(), new ContractIndex());
+
+        assertArrayEquals(readAllBytes(firstTargetPath), readAllBytes(secondTargetPath));
+
+        // the index of an already processed archive is replaced by an entry with the same time
+        val reprocessedTargetPath = tempDir.resolve("reprocessed.jar");
+        processArchive(firstTargetPath, reprocessedTargetPath, emptyList(), new ContractIndex());
+        try (
+            val source = ZipFile.builder().setPath(firstTargetPath).get();
+            val target = ZipFile.builder().setPath(reprocessedTargetPath).get()
+        ) {
+            val sourceIndexEntry = source.getEntry(CONTRACT_INDEX_PATH);
+            val targetIndexEntry = target.getEntry(CONTRACT_INDEX_PATH);
+            assertNotNull(sourceIndexEntry);
+            assertNotNull(targetIndexEntry);
+            assertEquals(sourceIndexEntry.getTime(), targetIndexEntry.getTime());
+        }
+    }
+
+
+    @SneakyThrows
+    private Path writeSourceArchive() {
+        val sourcePath = tempDir.resolve("source.jar");
+        try (val out = new ZipArchiveOutputStream(sourcePath)) {
+            writeEntry(out, newEntry("META-INF/MANIFEST.MF", DEFLATED), "Manifest-Version: 1.0\n".getBytes(UTF_8));
+            writeEntry(out, newEntry("META-INF/SIGNER.SF", DEFLATED), "Signature-Version: 1.0\n".getBytes(UTF_8));
+            writeEntry(out, newEntry("META-INF/SIGNER.RSA", DEFLATED), new byte[]{1, 2, 3});
+
+            val classEntry = newEntry(CLASS_ENTRY_NAME, DEFLATED);
+            classEntry.setUnixMode(0100644);
+            classEntry.setComment("class comment");
+            val timestamp = new X5455_ExtendedTimestamp();
+            timestamp.setModifyJavaTime(new Date(1_600_000_000_000L));
+            classEntry.addExtraField(timestamp);
+            writeEntry(out, classEntry, readBytecode(Fixture.class));
+
+            val resourceEntry = newEntry(RESOURCE_ENTRY_NAME, STORED);
+            resourceEntry.setComment("resource comment");
+            writeEntry(out, resourceEntry, "resource".getBytes(UTF_8));
+        }
+        return sourcePath;
+    }
+
+    private static ProcessingMetrics processArchive(
+        Path sourcePath,
+        Path targetPath,
+        Collection<String> includedPackages,
+        @Nullable ContractIndex contractIndex
+    ) {
+        val metrics = new ProcessingMetrics();
+        ArchiveProcessor.builder()
+            .sourcePath(sourcePath)
+            .targetPath(targetPath)
+            .includedPackages(includedPackages)
+            .config(newConfigBuilder().build())
+            .contractIndex(contractIndex)
+            .processingBudget(new ProcessingBudget(1, 1024 * 1024))
+            .metrics(metrics)
+            .build()
+            .process();
+        return metrics;
+    }
+
+    private static ZipArchiveEntry newEntry(String name, int method) {
+        val entry = new ZipArchiveEntry(name);
+        entry.setMethod(method);
+        entry.setTime(1_500_000_000_000L);
+        return entry;
+    }
+
+    @SneakyThrows
+    private static void writeEntry(ZipArchiveOutputStream out, ZipArchiveEntry entry, byte[] content) {
+        if (entry.getMethod() == STORED) {
+            val crc = new CRC32();
+            crc.update(content);
+            entry.setSize(content.length);
+            entry.setCrc(crc.getValue());
+        }
+        out.putArchiveEntry(entry);
+        out.write(content);
+        out.closeArchiveEntry();
+    }
+
+    @SneakyThrows
+    private static byte[] readEntry(ZipFile zipFile, ZipArchiveEntry entry) {
+        try (val in = zipFile.getInputStream(entry)) {
+            return toByteArray(in);
+        }
+    }
+
+}
@@ -0,0 +1,220 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static name.remal.gradle_plugins.insert_null_checks.BytecodeSizeUtils.estimateCodeSize;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.newConfigBuilder;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.process;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.readBytecode;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.objectweb.asm.ClassWriter.COMPUTE_MAXS;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.NOP;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_8;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.tree.ClassNode;
+
+class BytecodeSizeUtilsTest {
+
+    @Test
+    void compiledMethods() {
+        assertEstimatedSizes(readBytecode(Fixture.class));
+    }
+
+    @Test
+    void instrumentedMethods() {
+        for (val strategy : NullCheckStrategy.values()) {
+            val config = newConfigBuilder()
+                .nullCheckStrategy(strategy)
+                .build();
+            assertEstimatedSizes(process(config, ClassFileProcessorTest.Fixture.class));
+        }
+    }
+
+    @Test
+    void switchPaddingAndWideInstructions() {
+        val classWriter = new ClassWriter(COMPUTE_MAXS);
+        classWriter.visit(V1_8, ACC_PUBLIC, "pkg/Generated", null, "java/lang/Object", null);
+
+        for (int nops = 0; nops < 4; ++nops) {
+            val methodVisitor = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, "switch" + nops, "(I)I", null, null);
+            methodVisitor.visitCode();
+            for (int i = 0; i < nops; ++i) {
+                methodVisitor.visitInsn(NOP);
+            }
+            val defaultLabel = new Label();
+            val caseLabel = new Label();
+            methodVisitor.visitVarInsn(ILOAD, 0);
+            methodVisitor.visitTableSwitchInsn(1, 2, defaultLabel, caseLabel, caseLabel);
+            methodVisitor.visitLabel(caseLabel);
+            methodVisitor.visitVarInsn(ILOAD, 0);
+            methodVisitor.visitLookupSwitchInsn(defaultLabel, new int[]{10, 20}, new Label[]{caseLabel, caseLabel});
+            methodVisitor.visitLabel(defaultLabel);
+            methodVisitor.visitInsn(ICONST_0);
+            methodVisitor.visitInsn(IRETURN);
+            methodVisitor.visitMaxs(0, 0);
+            methodVisitor.visitEnd();
+        }
+
+        val methodVisitor = classWriter.visitMethod(ACC_PUBLIC | ACC_STATIC, "wide", "()V", null, null);
+        methodVisitor.visitCode();
+        methodVisitor.visitInsn(ICONST_0);
+        methodVisitor.visitVarInsn(ISTORE, 300);
+        methodVisitor.visitIincInsn(300, 1);
+        methodVisitor.visitIincInsn(1, 1000);
+        methodVisitor.visitVarInsn(ALOAD, 0);
+        methodVisitor.visitVarInsn(ASTORE, 1000);
+        methodVisitor.visitInsn(RETURN);
+        methodVisitor.visitMaxs(0, 0);
+        methodVisitor.visitEnd();
+
+        classWriter.visitEnd();
+        assertEstimatedSizes(classWriter.toByteArray());
+    }
+
+
+    private static void assertEstimatedSizes(byte[] bytecode) {
+        val classReader = new ClassReader(bytecode);
+        val actualSizes = readCodeSizes(classReader);
+        assertFalse(actualSizes.isEmpty());
+
+        val classNode = new ClassNode();
+        classReader.accept(classNode, 0);
+        for (val methodNode : classNode.methods) {
+            val actualSize = actualSizes.get(methodNode.name + methodNode.desc);
+            if (actualSize != null) {
+                assertEquals(
+                    actualSize,
+                    estimateCodeSize(methodNode.instructions),
+                    methodNode.name + methodNode.desc
+                );
+            }
+        }
+    }
+
+    /**
+     * Reads {@code code_length} of {@code Code} attributes of methods, as ASM doesn't expose it.
+     */
+    private static Map<String, Integer> readCodeSizes(ClassReader classReader) {
+        val buffer = new char[classReader.getMaxStringLength()];
+        int offset = classReader.header + 6;
+        offset += 2 + 2 * classReader.readUnsignedShort(offset);
+
+        // fields
+        int membersCount = classReader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < membersCount; ++i) {
+            offset += 6;
+            int attributesCount = classReader.readUnsignedShort(offset);
+            offset += 2;
+            for (int j = 0; j < attributesCount; ++j) {
+                offset += 6 + classReader.readInt(offset + 2);
+            }
+        }
+
+        // methods
+        Map<String, Integer> codeSizes = new HashMap<>();
+        membersCount = classReader.readUnsignedShort(offset);
+        offset += 2;
+        for (int i = 0; i < membersCount; ++i) {
+            val key = classReader.readUTF8(offset + 2, buffer) + classReader.readUTF8(offset + 4, buffer);
+            offset += 6;
+            int attributesCount = classReader.readUnsignedShort(offset);
+            offset += 2;
+            for (int j = 0; j < attributesCount; ++j) {
+                if (classReader.readUTF8(offset, buffer).equals("Code")) {
+                    // attribute_name_index, attribute_length, max_stack, max_locals, code_length
+                    codeSizes.put(key, classReader.readInt(offset + 10));
+                }
+                offset += 6 + classReader.readInt(offset + 2);
+            }
+        }
+        return codeSizes;
+    }
+
+    @SuppressWarnings({"unused", "java:S1144", "java:S131"})
+    static class Fixture {
+
+        private static final long LONG_CONSTANT = System.nanoTime();
+
+        private final List<Object> values = new ArrayList<>();
+
+        int tableSwitch(int value) {
+            switch (value) {
+                case 1:
+                    return 10;
+                case 2:
+                    return 20;
+                case 3:
+                    return 30;
+                default:
+                    return 0;
+            }
+        }
+
+        int lookupSwitch(int value) {
+            switch (value) {
+                case 1:
+                    return 10;
+                case 1_000:
+                    return 20;
+                case 1_000_000:
+                    return 30;
+                default:
+                    return 0;
+            }
+        }
+
+        static Object constants(int value) {
+            value += 1_000;
+            value += 10;
+            long longValue = LONG_CONSTANT + 123_456_789_012L;
+            double doubleValue = longValue * 1.5;
+            Object[] values = {"string", Fixture.class, (short) 1_000, (byte) 100, 1_000_000, doubleValue};
+            return values[value & 3];
+        }
+
+        Object arrays(int size) {
+            int[] ints = new int[size];
+            int[][] matrix = new int[size][size];
+            values.add(ints);
+            values.add(matrix);
+            return matrix[0];
+        }
+
+        Supplier<String> lambda(String value) {
+            return () -> value + values.size();
+        }
+
+        synchronized int loop(long first, double second, String third, int count) {
+            int result = 0;
+            for (int i = 0; i < count; ++i) {
+                try {
+                    result += third.length();
+                } catch (RuntimeException e) {
+                    result -= (int) (first + second);
+                }
+            }
+            return result;
+        }
+
+    }
+
+}
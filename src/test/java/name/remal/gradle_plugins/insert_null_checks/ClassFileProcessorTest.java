@@ -0,0 +1,340 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static com.google.common.io.ByteStreams.toByteArray;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Comparator.comparing;
+import static java.util.Objects.requireNonNull;
+import static name.remal.gradle_plugins.insert_null_checks.AnnotationDescMatcher.newAnnotationDescMatcher;
+import static name.remal.gradle_plugins.insert_null_checks.ClassHeader.readClassHeader;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.params.provider.Arguments.arguments;
+
+import java.io.ObjectStreamClass;
+import java.io.PrintWriter;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorConfig.ClassFileProcessorConfigBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.util.CheckClassAdapter;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+class ClassFileProcessorTest {
+
+    private static final String KILL_SWITCH_PROPERTY = ClassFileProcessorTest.class.getName() + ".disabled";
+
+    static Stream<Arguments> strategiesAndFrameModes() {
+        return Stream.of(NullCheckStrategy.values()).flatMap(strategy ->
+            Stream.of(false, true).map(preserveStackMapFrames -> arguments(strategy, preserveStackMapFrames))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("strategiesAndFrameModes")
+    void nullChecksAreInserted(NullCheckStrategy strategy, boolean preserveStackMapFrames) {
+        val config = newConfigBuilder()
+            .nullCheckStrategy(strategy)
+            .preserveStackMapFrames(preserveStackMapFrames)
+            .build();
+        val bytecode = process(config, Fixture.class);
+        verify(bytecode);
+
+        val fixtureClass = defineClass(bytecode);
+
+        assertEquals("value", invoke(fixtureClass, null, "staticMethod", "value"));
+        assertNullCheck("param", () -> invoke(fixtureClass, null, "staticMethod", (Object) null));
+
+        val fixture = newInstance(fixtureClass, "value");
+        assertEquals("value", invoke(fixtureClass, fixture, "instanceMethod", "value"));
+        assertNullCheck("param", () -> invoke(fixtureClass, fixture, "instanceMethod", (Object) null));
+
+        // the check is executed before `super()` invocation:
+        assertNullCheck("param", () -> newInstance(fixtureClass, (Object) null));
+
+        assertEquals("value", invoke(fixtureClass, null, "wideSlots", 1L, "value", 2.0, "other"));
+        assertNullCheck("param", () -> invoke(fixtureClass, null, "wideSlots", 1L, null, 2.0, "other"));
+        assertNullCheck("other", () -> invoke(fixtureClass, null, "wideSlots", 1L, "value", 2.0, null));
+
+        assertEquals(0, invoke(fixtureClass, null, "startsWithBranchTarget", "value", 3));
+        assertNullCheck("param", () -> invoke(fixtureClass, null, "startsWithBranchTarget", null, 3));
+    }
+
+    @Test
+    void processedClassIsNotProcessedAgain() {
+        val config = newConfigBuilder().build();
+        val bytecode = process(config, Fixture.class);
+        assertTrue(readClassHeader(new ClassReader(bytecode)).isProcessed());
+
+        assertNull(newProcessor(config).processBytecode(bytecode));
+    }
+
+    /**
+     * The whole-class processing is used if checks of private methods are elided,
+     * so checks of other methods must be the same as with the streaming processing.
+     */
+    @ParameterizedTest
+    @MethodSource("strategiesAndFrameModes")
+    void streamingAndWholeClassProcessingProduceSameBytecode(
+        NullCheckStrategy strategy,
+        boolean preserveStackMapFrames
+    ) {
+        val configBuilder = newConfigBuilder()
+            .nullCheckStrategy(strategy)
+            .preserveStackMapFrames(preserveStackMapFrames)
+            .killSwitchSystemPropertyName(KILL_SWITCH_PROPERTY)
+            .includePrivateMethods(true);
+        val streamingBytecode = process(configBuilder.eliminateRedundantChecks(false).build(), NameClashFixture.class);
+        verify(streamingBytecode);
+        val wholeClassBytecode = process(configBuilder.eliminateRedundantChecks(true).build(), NameClashFixture.class);
+        verify(wholeClassBytecode);
+
+        assertEquals(disassemble(wholeClassBytecode), disassemble(streamingBytecode));
+
+        val processedClass = defineClass(streamingBytecode);
+        assertNullCheck("param", () -> invoke(processedClass, null, "staticMethod", (Object) null));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void killSwitchDisablesNullChecks(boolean wholeClassAnalysis) {
+        val config = newConfigBuilder()
+            .killSwitchSystemPropertyName(KILL_SWITCH_PROPERTY)
+            .includePrivateMethods(wholeClassAnalysis)
+            .eliminateRedundantChecks(wholeClassAnalysis)
+            .build();
+        val bytecode = process(config, Fixture.class);
+        verify(bytecode);
+        val interfaceBytecode = process(config, InterfaceFixture.class);
+        verify(interfaceBytecode);
+
+        assertNullCheck("param", () -> invoke(defineClass(bytecode), null, "staticMethod", (Object) null));
+        assertNullCheck("param", () -> invoke(defineClass(interfaceBytecode), null, "staticMethod", (Object) null));
+
+        System.setProperty(KILL_SWITCH_PROPERTY, "true");
+        try {
+            assertNull(invoke(defineClass(bytecode), null, "staticMethod", (Object) null));
+            assertNull(invoke(defineClass(interfaceBytecode), null, "staticMethod", (Object) null));
+        } finally {
+            System.clearProperty(KILL_SWITCH_PROPERTY);
+        }
+
+        // the kill switch field isn't added to interfaces, as it would be public and inherited
+        assertEquals(0, defineClass(interfaceBytecode).getDeclaredFields().length);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void killSwitchKeepsDefaultSerialVersionUid(boolean wholeClassAnalysis) {
+        val config = newConfigBuilder()
+            .killSwitchSystemPropertyName(KILL_SWITCH_PROPERTY)
+            .includePrivateMethods(wholeClassAnalysis)
+            .eliminateRedundantChecks(wholeClassAnalysis)
+            .build();
+        val bytecode = process(config, SerializableFixture.class);
+        verify(bytecode);
+
+        val processedClass = defineClass(bytecode);
+        assertNullCheck("param", () -> invoke(processedClass, null, "staticMethod", (Object) null));
+        assertEquals(
+            ObjectStreamClass.lookup(SerializableFixture.class).getSerialVersionUID(),
+            ObjectStreamClass.lookup(processedClass).getSerialVersionUID()
+        );
+    }
+
+    @SuppressWarnings("unused")
+    static class Fixture {
+
+        @Nullable
+        private final Object value;
+
+        Fixture(String param) {
+            super();
+            this.value = param;
+        }
+
+        static String staticMethod(String param) {
+            return param;
+        }
+
+        String instanceMethod(String param) {
+            return param;
+        }
+
+        static String wideSlots(long first, String param, double second, String other) {
+            return param;
+        }
+
+        static int startsWithBranchTarget(String param, int count) {
+            // the first instruction is a target of a backward jump, so the method starts with a stack map frame
+            do {
+                --count;
+            } while (count > 0);
+            return count;
+        }
+
+    }
+
+    /**
+     * Declares members with the same names as the members added by the processor.
+     */
+    @SuppressWarnings({"unused", "java:S116", "java:S3008", "java:S100"})
+    static class NameClashFixture {
+
+        private static final Object CONSTANT = new Object();
+
+        private static boolean $insertNullChecks$disabled;
+
+        static String staticMethod(String param) {
+            return param;
+        }
+
+        String instanceMethod(String first, String second) {
+            return first + second + CONSTANT;
+        }
+
+        private static NullPointerException $insertNullChecks$nullParameter(int id) {
+            return new NullPointerException(String.valueOf(id));
+        }
+
+    }
+
+    @SuppressWarnings("unused")
+    interface InterfaceFixture {
+
+        static String staticMethod(String param) {
+            return param;
+        }
+
+    }
+
+    @SuppressWarnings({"unused", "serial", "java:S2057"})
+    static class SerializableFixture implements Serializable {
+
+        static String staticMethod(String param) {
+            return param;
+        }
+
+    }
+
+
+    static ClassFileProcessorConfigBuilder newConfigBuilder() {
+        return ClassFileProcessorConfig.builder()
+            .nullCheckStrategy(NullCheckStrategy.INLINE_THROW)
+            .annotationDescMatcher(newAnnotationDescMatcher(
+                emptyList(),
+                emptyList(),
+                emptyList(),
+                emptyList(),
+                emptyList(),
+                singletonList("Nullable")
+            ))
+            .fingerprint("test");
+    }
+
+    static ClassFileProcessor newProcessor(ClassFileProcessorConfig config) {
+        return ClassFileProcessor.builder()
+            .config(config)
+            .build();
+    }
+
+    static byte[] process(ClassFileProcessorConfig config, Class<?> clazz) {
+        val bytecode = newProcessor(config).processBytecode(readBytecode(clazz));
+        assertNotNull(bytecode, "Not processed: " + clazz);
+        return bytecode;
+    }
+
+    @SneakyThrows
+    static byte[] readBytecode(Class<?> clazz) {
+        val resourceName = clazz.getName().replace('.', '/') + ".class";
+        try (val in = requireNonNull(clazz.getClassLoader().getResourceAsStream(resourceName))) {
+            return toByteArray(in);
+        }
+    }
+
+    static void verify(byte[] bytecode) {
+        val output = new StringWriter();
+        CheckClassAdapter.verify(new ClassReader(bytecode), false, new PrintWriter(output));
+        assertEquals("", output.toString());
+    }
+
+    /**
+     * Members are sorted, as processors can add them in different order.
+     */
+    static String disassemble(byte[] bytecode) {
+        val classNode = new ClassNode();
+        new ClassReader(bytecode).accept(classNode, 0);
+        classNode.fields.sort(comparing(fieldNode -> fieldNode.name));
+        classNode.methods.sort(comparing(methodNode -> methodNode.name + methodNode.desc));
+
+        val output = new StringWriter();
+        classNode.accept(new TraceClassVisitor(new PrintWriter(output)));
+        return output.toString();
+    }
+
+    /**
+     * Every class is defined by a new class loader, so its static initializer is executed again.
+     */
+    static Class<?> defineClass(byte[] bytecode) {
+        return new TestClassLoader().define(bytecode);
+    }
+
+    @SneakyThrows
+    static Object newInstance(Class<?> clazz, Object... args) {
+        val constructor = clazz.getDeclaredConstructors()[0];
+        constructor.setAccessible(true);
+        try {
+            return constructor.newInstance(args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @Nullable
+    @SneakyThrows
+    static Object invoke(Class<?> clazz, @Nullable Object target, String methodName, Object... args) {
+        for (val method : clazz.getDeclaredMethods()) {
+            if (method.getName().equals(methodName)) {
+                method.setAccessible(true);
+                try {
+                    return method.invoke(target, args);
+                } catch (InvocationTargetException e) {
+                    throw e.getCause();
+                }
+            }
+        }
+        throw new AssertionError("Method not found: " + methodName);
+    }
+
+    static void assertNullCheck(String paramName, Runnable action) {
+        val exception = assertThrows(NullPointerException.class, action::run);
+        assertEquals(paramName + " must not be null", exception.getMessage());
+    }
+
+    private static class TestClassLoader extends ClassLoader {
+
+        TestClassLoader() {
+            super(ClassFileProcessorTest.class.getClassLoader());
+        }
+
+        Class<?> define(byte[] bytecode) {
+            return defineClass(null, bytecode, 0, bytecode.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.write;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.newConfigBuilder;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.process;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.readBytecode;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.parseContractIndex;
+import static name.remal.gradle_plugins.insert_null_checks.ContractIndex.readContractIndex;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.objectweb.asm.Type.getInternalName;
+
+import java.nio.file.Path;
+import lombok.SneakyThrows;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.Fixture;
+import name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.InterfaceFixture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ContractIndexTest {
+
+    private static final String FIXTURE_NAME = getInternalName(Fixture.class);
+
+    private static final String INTERFACE_FIXTURE_NAME = getInternalName(InterfaceFixture.class);
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    @SneakyThrows
+    void roundTrip() {
+        val index = new ContractIndex();
+        index.addClass(process(newConfigBuilder().build(), Fixture.class), null);
+        index.addClass(readBytecode(InterfaceFixture.class), null);
+        val content = index.toBytes();
+
+        assertArrayEquals(content, parseContractIndex(new String(content, UTF_8)).toBytes());
+
+        val indexPath = tempDir.resolve("index.idx");
+        write(indexPath, content);
+        val readIndex = readContractIndex(indexPath);
+        assertArrayEquals(content, readIndex.toBytes());
+        assertNotNull(readIndex.findTypeInfo(FIXTURE_NAME));
+        assertNotNull(readIndex.findTypeInfo(INTERFACE_FIXTURE_NAME));
+    }
+
+    @Test
+    void checkedParametersAreIndexed() {
+        val index = new ContractIndex();
+        index.addClass(process(newConfigBuilder().build(), Fixture.class), null);
+        assertTrue(
+            hasMethodLine(index, FIXTURE_NAME, "staticMethod(Ljava/lang/String;)Ljava/lang/String;", "0"),
+            new String(index.toBytes(), UTF_8)
+        );
+    }
+
+    @Test
+    void checkedParametersGuardedByKillSwitchAreIndexed() {
+        val config = newConfigBuilder()
+            .killSwitchSystemPropertyName("disabled")
+            .build();
+        val index = new ContractIndex();
+        index.addClass(process(config, Fixture.class), "disabled");
+        assertTrue(
+            hasMethodLine(index, FIXTURE_NAME, "staticMethod(Ljava/lang/String;)Ljava/lang/String;", "0"),
+            new String(index.toBytes(), UTF_8)
+        );
+    }
+
+    @Test
+    void notExistingFileIsReadAsEmptyIndex() {
+        val index = readContractIndex(tempDir.resolve("not-existing.idx"));
+        assertArrayEquals(new ContractIndex().toBytes(), index.toBytes());
+    }
+
+    @Test
+    void unsupportedFormatIsParsedAsEmptyIndex() {
+        val index = parseContractIndex("unsupported\nC\tpkg/Class\t\t\t\n");
+        assertFalse(index.containsClass("pkg/Class"));
+    }
+
+    /**
+     * The same way as the index of a compile task is updated: contracts of deleted classes are removed,
+     * contracts of changed classes are replaced, contracts of other classes are kept.
+     */
+    @Test
+    @SneakyThrows
+    void incrementalMerge() {
+        val previousIndex = new ContractIndex();
+        previousIndex.addClass(readBytecode(Fixture.class), null);
+        previousIndex.addClass(readBytecode(InterfaceFixture.class), null);
+        val indexPath = tempDir.resolve("index.idx");
+        write(indexPath, previousIndex.toBytes());
+
+        val index = readContractIndex(indexPath);
+        index.retainClasses(FIXTURE_NAME::equals);
+        assertTrue(index.containsClass(FIXTURE_NAME));
+        assertFalse(index.containsClass(INTERFACE_FIXTURE_NAME));
+        assertNull(index.findTypeInfo(INTERFACE_FIXTURE_NAME));
+        assertFalse(hasMethodLine(index, FIXTURE_NAME, "staticMethod(Ljava/lang/String;)Ljava/lang/String;", "0"));
+
+        val changedIndex = new ContractIndex();
+        changedIndex.addClass(process(newConfigBuilder().build(), Fixture.class), null);
+        index.addAll(changedIndex);
+        assertTrue(hasMethodLine(index, FIXTURE_NAME, "staticMethod(Ljava/lang/String;)Ljava/lang/String;", "0"));
+
+        val expectedIndex = new ContractIndex();
+        expectedIndex.addClass(process(newConfigBuilder().build(), Fixture.class), null);
+        assertEquals(new String(expectedIndex.toBytes(), UTF_8), new String(index.toBytes(), UTF_8));
+    }
+
+
+    private static boolean hasMethodLine(
+        ContractIndex index,
+        String className,
+        String methodNameDesc,
+        String checkedParamIndexes
+    ) {
+        val linePrefix = "M\t" + className + '\t' + methodNameDesc + '\t' + checkedParamIndexes + '\t';
+        for (val line : new String(index.toBytes(), UTF_8).split("\n")) {
+            if (line.startsWith(linePrefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,218 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static java.util.Objects.requireNonNull;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.newConfigBuilder;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.process;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.readBytecode;
+import static name.remal.gradle_plugins.insert_null_checks.NullCheckedParametersScanner.findNullCheckedParameters;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.objectweb.asm.ClassReader.SKIP_DEBUG;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import javax.annotation.Nullable;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.tree.ClassNode;
+
+class NullCheckedParametersScannerTest {
+
+    @Test
+    void requireNonNullInvocations() {
+        assertEquals(setOf(0, 1), findNullCheckedParametersOf("requireNonNullInvocations"));
+    }
+
+    @Test
+    void checkNotNullInvocations() {
+        assertEquals(setOf(0, 1), findNullCheckedParametersOf("checkNotNullInvocations"));
+    }
+
+    @Test
+    void lombokNonNullChecks() {
+        assertEquals(setOf(0, 1), findNullCheckedParametersOf("lombokNonNullChecks"));
+    }
+
+    @Test
+    void fieldDereference() {
+        assertEquals(singleton(0), findNullCheckedParametersOf("fieldDereference"));
+    }
+
+    @Test
+    void arrayDereferences() {
+        assertEquals(setOf(0, 1), findNullCheckedParametersOf("arrayDereferences"));
+    }
+
+    @Test
+    void monitorEnterStopsScanning() {
+        assertEquals(singleton(0), findNullCheckedParametersOf("monitorEnterStopsScanning"));
+    }
+
+    @Test
+    void invocationStopsScanning() {
+        assertEquals(singleton(0), findNullCheckedParametersOf("invocationStopsScanning"));
+    }
+
+    @Test
+    void tryCatchBlockStopsScanning() {
+        assertEquals(emptySet(), findNullCheckedParametersOf("tryCatchBlockStopsScanning"));
+    }
+
+    @Test
+    void branchStopsScanning() {
+        assertEquals(emptySet(), findNullCheckedParametersOf("branchStopsScanning"));
+    }
+
+    @Test
+    void sideEffectStopsScanning() {
+        assertEquals(emptySet(), findNullCheckedParametersOf("sideEffectStopsScanning"));
+    }
+
+    @Test
+    void overwrittenParameter() {
+        assertEquals(emptySet(), findNullCheckedParametersOf("overwrittenParameter"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(NullCheckStrategy.class)
+    void checksGuardedByKillSwitch(NullCheckStrategy strategy) {
+        val config = newConfigBuilder()
+            .nullCheckStrategy(strategy)
+            .killSwitchSystemPropertyName("disabled")
+            .build();
+        assertEquals(singleton(0), findNullCheckedParametersOf(
+            process(config, ClassFileProcessorTest.Fixture.class),
+            "staticMethod",
+            "disabled"
+        ));
+        assertEquals(singleton(0), findNullCheckedParametersOf(
+            process(config, ClassFileProcessorTest.InterfaceFixture.class),
+            "staticMethod",
+            "disabled"
+        ));
+    }
+
+    /**
+     * Without debug info, the guard is the first instruction of the method, the same way as a kill switch guard is.
+     */
+    @Test
+    void checksGuardedByOtherSystemProperty() {
+        val classNode = new ClassNode();
+        new ClassReader(readBytecode(Fixture.class)).accept(classNode, SKIP_DEBUG);
+        for (val methodNode : classNode.methods) {
+            if (methodNode.name.equals("checksGuardedByOtherSystemProperty")) {
+                assertEquals(emptySet(), findNullCheckedParameters(methodNode, "disabled"));
+                return;
+            }
+        }
+        throw new AssertionError("Method not found: checksGuardedByOtherSystemProperty");
+    }
+
+
+    private static Set<Integer> setOf(Integer... values) {
+        return new LinkedHashSet<>(asList(values));
+    }
+
+    private static Set<Integer> findNullCheckedParametersOf(String methodName) {
+        return findNullCheckedParametersOf(readBytecode(Fixture.class), methodName, null);
+    }
+
+    private static Set<Integer> findNullCheckedParametersOf(
+        byte[] bytecode,
+        String methodName,
+        @Nullable String killSwitchSystemPropertyName
+    ) {
+        val classNode = new ClassNode();
+        new ClassReader(bytecode).accept(classNode, 0);
+        for (val methodNode : classNode.methods) {
+            if (methodNode.name.equals(methodName)) {
+                return findNullCheckedParameters(methodNode, killSwitchSystemPropertyName);
+            }
+        }
+        throw new AssertionError("Method not found: " + methodName);
+    }
+
+    @SuppressWarnings({"unused", "ResultOfMethodCallIgnored", "java:S1166", "java:S2201"})
+    static class Fixture {
+
+        int field;
+
+        static void requireNonNullInvocations(String first, String second) {
+            requireNonNull(first);
+            requireNonNull(second, "second");
+        }
+
+        static void checkNotNullInvocations(String first, String second) {
+            checkNotNull(first);
+            checkNotNull(second, "second");
+        }
+
+        static void lombokNonNullChecks(String first, String second) {
+            if (first == null) {
+                throw new NullPointerException("first is marked non-null but is null");
+            }
+            if (second == null) {
+                throw new NullPointerException("second is marked non-null but is null");
+            }
+        }
+
+        static int fieldDereference(Fixture fixture) {
+            return fixture.field;
+        }
+
+        static int arrayDereferences(int[] first, Object[] second) {
+            int length = first.length;
+            return second[length] != null ? 1 : 0;
+        }
+
+        static void monitorEnterStopsScanning(Object lock, String other) {
+            synchronized (lock) {
+                other.length();
+            }
+        }
+
+        static void invocationStopsScanning(String first, String second) {
+            first.length();
+            second.length();
+        }
+
+        static void tryCatchBlockStopsScanning(String param) {
+            try {
+                param.length();
+            } catch (NullPointerException e) {
+                // ignore
+            }
+        }
+
+        static void branchStopsScanning(String param, boolean flag) {
+            if (flag) {
+                param.length();
+            }
+            param.length();
+        }
+
+        static void sideEffectStopsScanning(String param) {
+            System.out.println();
+            param.length();
+        }
+
+        static void overwrittenParameter(String param, String other) {
+            param = other;
+            param.length();
+        }
+
+        static void checksGuardedByOtherSystemProperty(String param) {
+            if (!Boolean.getBoolean("other")) {
+                requireNonNull(param);
+            }
+        }
+
+    }
+
+}
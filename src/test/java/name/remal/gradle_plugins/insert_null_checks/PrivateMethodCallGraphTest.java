@@ -0,0 +1,146 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.Collections.singleton;
+import static name.remal.gradle_plugins.insert_null_checks.ClassFileProcessorTest.readBytecode;
+import static name.remal.gradle_plugins.insert_null_checks.PrivateMethodCallGraph.findNonNullParametersOfPrivateMethods;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.objectweb.asm.Opcodes.V11;
+import static org.objectweb.asm.Type.getArgumentTypes;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.MethodNode;
+
+class PrivateMethodCallGraphTest {
+
+    @Test
+    void directInvocation() {
+        assertEquals(singleton(0), findNonNullParameters(readFixture()).get("callee"));
+    }
+
+    @Test
+    void recursiveInvocation() {
+        assertEquals(singleton(0), findNonNullParameters(readFixture()).get("recursive"));
+    }
+
+    @Test
+    void reassignedParameter() {
+        assertFalse(findNonNullParameters(readFixture()).containsKey("reassigned"));
+    }
+
+    @Test
+    void methodHandleEscape() {
+        assertFalse(findNonNullParameters(readFixture()).containsKey("escaped"));
+    }
+
+    @Test
+    void runtimeVisibleAnnotation() {
+        assertFalse(findNonNullParameters(readFixture()).containsKey("annotated"));
+    }
+
+    @Test
+    void nestMember() {
+        val classNode = readFixture();
+        classNode.version = V11;
+        classNode.nestHostClass = Type.getInternalName(PrivateMethodCallGraphTest.class);
+        assertTrue(findNonNullParameters(classNode).isEmpty());
+    }
+
+
+    private static ClassNode readFixture() {
+        val classNode = new ClassNode();
+        new ClassReader(readBytecode(Fixture.class)).accept(classNode, 0);
+        // the test may be compiled for Java 11+, where nested classes are members of a nest
+        classNode.nestHostClass = null;
+        classNode.nestMembers = null;
+        return classNode;
+    }
+
+    /**
+     * All reference parameters of all methods are planned to be checked.
+     */
+    private static Map<String, Set<Integer>> findNonNullParameters(ClassNode classNode) {
+        Map<MethodNode, List<Integer>> plannedChecks = new LinkedHashMap<>();
+        for (val methodNode : classNode.methods) {
+            List<Integer> paramIndexes = new ArrayList<>();
+            val paramTypes = getArgumentTypes(methodNode.desc);
+            for (int paramIndex = 0; paramIndex < paramTypes.length; ++paramIndex) {
+                val sort = paramTypes[paramIndex].getSort();
+                if (sort == Type.OBJECT || sort == Type.ARRAY) {
+                    paramIndexes.add(paramIndex);
+                }
+            }
+            if (!paramIndexes.isEmpty()) {
+                plannedChecks.put(methodNode, paramIndexes);
+            }
+        }
+
+        Map<String, Set<Integer>> result = new LinkedHashMap<>();
+        findNonNullParametersOfPrivateMethods(classNode, plannedChecks).forEach((methodNode, paramIndexes) ->
+            result.put(methodNode.name, paramIndexes)
+        );
+        return result;
+    }
+
+    @SuppressWarnings({"unused", "ResultOfMethodCallIgnored", "java:S1144", "java:S1172", "java:S1123"})
+    static class Fixture {
+
+        public void directCaller(String param) {
+            callee(param);
+        }
+
+        private void callee(String param) {
+            param.length();
+        }
+
+        public void recursionCaller(String param) {
+            recursive(param, true);
+        }
+
+        private void recursive(String param, boolean again) {
+            if (again) {
+                recursive(param, false);
+            }
+        }
+
+        public void reassigningCaller(String param) {
+            param = param.trim();
+            reassigned(param);
+        }
+
+        private void reassigned(String param) {
+            param.length();
+        }
+
+        public Consumer<String> methodHandleCaller(String param) {
+            escaped(param);
+            return this::escaped;
+        }
+
+        private void escaped(String param) {
+            param.length();
+        }
+
+        public void annotatedCaller(String param) {
+            annotated(param);
+        }
+
+        @Deprecated
+        private void annotated(String param) {
+            param.length();
+        }
+
+    }
+
+}
@@ -0,0 +1,152 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.Files.isRegularFile;
+import static java.nio.file.Files.setLastModifiedTime;
+import static java.nio.file.Files.walk;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.annotation.Nullable;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ProcessedClassCacheTest {
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void missAndHit() {
+        val cache = new ProcessedClassCache(cacheDir, Long.MAX_VALUE);
+        val key = cache.getKey("config", bytes("bytecode"));
+        assertNull(cache.get(key));
+
+        cache.put(key, bytes("processed"));
+        assertArrayEquals(bytes("processed"), cache.get(key));
+
+        val notChangedKey = cache.getKey("config", bytes("not changed"));
+        cache.put(notChangedKey, null);
+        assertArrayEquals(new byte[0], cache.get(notChangedKey));
+    }
+
+    @Test
+    void keysDependOnConfigAndBytecode() {
+        val cache = new ProcessedClassCache(cacheDir, Long.MAX_VALUE);
+        val key = cache.getKey("config", bytes("bytecode"));
+        assertEquals(key, cache.getKey("config", bytes("bytecode")));
+        assertNotEquals(key, cache.getKey("other config", bytes("bytecode")));
+        assertNotEquals(key, cache.getKey("config", bytes("other bytecode")));
+    }
+
+    @Test
+    @SneakyThrows
+    void evictDeletesLeastRecentlyUsedEntries() {
+        val cache = new ProcessedClassCache(cacheDir, 8);
+        val firstKey = cache.getKey("config", bytes("first"));
+        val secondKey = cache.getKey("config", bytes("second"));
+        val thirdKey = cache.getKey("config", bytes("third"));
+        cache.put(firstKey, bytes("1111"));
+        cache.put(secondKey, bytes("2222"));
+        cache.put(thirdKey, bytes("3333"));
+        setLastModifiedTime(getEntryPath(firstKey), FileTime.fromMillis(1_000));
+        setLastModifiedTime(getEntryPath(secondKey), FileTime.fromMillis(2_000));
+        setLastModifiedTime(getEntryPath(thirdKey), FileTime.fromMillis(3_000));
+
+        // a hit makes the entry the most recently used one
+        assertNotNull(cache.get(firstKey));
+
+        cache.evict();
+        assertNotNull(cache.get(firstKey));
+        assertNull(cache.get(secondKey));
+        assertNotNull(cache.get(thirdKey));
+    }
+
+    @Test
+    void evictKeepsEntriesWithinLimit() {
+        val cache = new ProcessedClassCache(cacheDir, 8);
+        val key = cache.getKey("config", bytes("bytecode"));
+        cache.put(key, bytes("12345678"));
+
+        cache.evict();
+        assertNotNull(cache.get(key));
+    }
+
+    @Test
+    @SneakyThrows
+    void putIsAtomic() {
+        val cache = new ProcessedClassCache(cacheDir, Long.MAX_VALUE);
+        val key = cache.getKey("config", bytes("bytecode"));
+        val contentSize = 256 * 1024;
+        val threadsCount = 4;
+
+        val executor = Executors.newFixedThreadPool(threadsCount * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threadsCount; ++thread) {
+                val content = new byte[contentSize];
+                Arrays.fill(content, (byte) thread);
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 50; ++i) {
+                        cache.put(key, content);
+                    }
+                }));
+                futures.add(executor.submit((Callable<Void>) () -> {
+                    for (int i = 0; i < 50; ++i) {
+                        assertCompleteContent(cache.get(key), contentSize);
+                    }
+                    return null;
+                }));
+            }
+            for (val future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, SECONDS));
+        }
+
+        assertCompleteContent(cache.get(key), contentSize);
+        try (val paths = walk(cacheDir)) {
+            // temporary files are not left
+            assertEquals(1, paths.filter(path -> isRegularFile(path)).count());
+        }
+    }
+
+
+    private Path getEntryPath(String key) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key);
+    }
+
+    private static void assertCompleteContent(@Nullable byte[] content, int expectedSize) {
+        if (content == null) {
+            // not written yet
+            return;
+        }
+
+        assertEquals(expectedSize, content.length);
+        val expectedContent = new byte[expectedSize];
+        Arrays.fill(expectedContent, content[0]);
+        assertArrayEquals(expectedContent, content);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(UTF_8);
+    }
+
+}
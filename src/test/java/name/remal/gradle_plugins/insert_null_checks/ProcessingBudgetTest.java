@@ -0,0 +1,76 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.SneakyThrows;
+import lombok.val;
+import org.junit.jupiter.api.Test;
+
+class ProcessingBudgetTest {
+
+    @Test
+    void fileLargerThanInFlightBytesLimitIsProcessed() {
+        val budget = new ProcessingBudget(2, 100);
+        val result = assertTimeoutPreemptively(Duration.ofSeconds(10), () ->
+            budget.call(1_000, new ProcessingMetrics(), () -> "processed")
+        );
+        assertEquals("processed", result);
+    }
+
+    @Test
+    void concurrentCallsRespectMaxWorkers() {
+        val maxConcurrentCalls = runConcurrently(new ProcessingBudget(2, Long.MAX_VALUE), 1);
+        assertTrue(maxConcurrentCalls <= 2, "Concurrent calls: " + maxConcurrentCalls);
+    }
+
+    @Test
+    void concurrentCallsRespectMaxInFlightBytes() {
+        val maxConcurrentCalls = runConcurrently(new ProcessingBudget(8, 100), 60);
+        assertEquals(1, maxConcurrentCalls);
+    }
+
+
+    /**
+     * @return max number of actions executed at the same time
+     */
+    @SneakyThrows
+    private static int runConcurrently(ProcessingBudget budget, long bytes) {
+        val metrics = new ProcessingMetrics();
+        val concurrentCalls = new AtomicInteger();
+        val maxConcurrentCalls = new AtomicInteger();
+        val executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; ++i) {
+                futures.add(executor.submit(() -> budget.run(bytes, metrics, () -> {
+                    val calls = concurrentCalls.incrementAndGet();
+                    maxConcurrentCalls.accumulateAndGet(calls, Math::max);
+                    sleep();
+                    concurrentCalls.decrementAndGet();
+                })));
+            }
+            for (val future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, SECONDS));
+        }
+        return maxConcurrentCalls.get();
+    }
+
+    @SneakyThrows
+    private static void sleep() {
+        Thread.sleep(5);
+    }
+
+}
@@ -0,0 +1,37 @@
+package name.remal.gradle_plugins.insert_null_checks;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Paths;
+import lombok.val;
+import name.remal.gradle_plugins.insert_null_checks.ProcessingMetrics.MethodSizeChange;
+import org.junit.jupiter.api.Test;
+
+class ProcessingMetricsTest {
+
+    @Test
+    void jsonStringsAreEscaped() {
+        val json = new ProcessingMetrics().toJson(":task\"\\\n\t\u0001");
+        assertTrue(json.contains("\"task\": \":task\\\"\\\\\\n\\t\\u0001\","), json);
+    }
+
+    @Test
+    void inliningThresholdWarningHasCountOfMethods() {
+        val reportPath = Paths.get("report.json");
+        val metrics = new ProcessingMetrics();
+        assertNull(metrics.getInliningThresholdWarning(reportPath));
+
+        metrics.methodExceededInliningThreshold(new MethodSizeChange("pkg/Class", "first", "()V", 30, 40));
+        metrics.methodExceededInliningThreshold(new MethodSizeChange("pkg/Class", "second", "()V", 30, 40));
+        val warning = metrics.getInliningThresholdWarning(reportPath);
+        assertNotNull(warning);
+        assertTrue(warning.contains(" 2 methods "), warning);
+        assertTrue(warning.contains(reportPath.toString()), warning);
+        assertEquals(2, metrics.getInliningThresholdMessages().size());
+        assertTrue(metrics.getWarnings().isEmpty());
+    }
+
+}